@@ -0,0 +1,200 @@
+/**
+ * 
+ * Copyright 2022 Modelware Solutions LLC and CEA-LIST.
+ * 
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * 
+ */
+package io.opencaesar.ecore2oml;
+
+import java.nio.file.Path;
+
+import org.eclipse.emf.common.util.URI;
+import org.eclipse.emf.ecore.EPackage;
+import org.eclipse.emf.ecore.resource.Resource;
+import org.eclipse.emf.ecore.resource.ResourceSet;
+import org.eclipse.emf.ecore.resource.impl.ResourceSetImpl;
+import org.eclipse.emf.ecore.util.ECrossReferenceAdapter;
+
+import io.opencaesar.ecore2oml.Ecore2OmlApp.Options;
+import io.opencaesar.ecore2oml.EcoreUtilities.AbstractnessCache;
+import io.opencaesar.oml.dsl.OmlStandaloneSetup;
+import io.opencaesar.oml.resource.OmlJsonResourceFactory;
+import io.opencaesar.oml.resource.OmlXMIResourceFactory;
+import io.opencaesar.oml.util.OmlBuilder;
+import io.opencaesar.oml.util.OmlConstants;
+
+/**
+ * The models and conversion setup shared by the benchmarks
+ */
+final class BenchmarkModels {
+
+	private static boolean omlSetup;
+
+	private BenchmarkModels() {
+	}
+
+	/**
+	 * Registers the OML resource factories (once)
+	 */
+	static synchronized void setupOml() {
+		if (!omlSetup) {
+			OmlStandaloneSetup.doSetup();
+			OmlXMIResourceFactory.register();
+			OmlJsonResourceFactory.register();
+			omlSetup = true;
+		}
+	}
+
+	/**
+	 * The kinds of elements a benchmark model is made of
+	 */
+	enum ElementKind {
+		CLASSES, ATTRIBUTES, REFERENCES, ENUMS, INSTANCES
+	}
+
+	/**
+	 * Creates the generator of a model made of the given number of elements of the given kind:
+	 * <ul>
+	 * <li>CLASSES: classes in chains of specialization of depth 10</li>
+	 * <li>ATTRIBUTES: attributes, 10 per class</li>
+	 * <li>REFERENCES: references, 10 per class, 2 of which with opposites and the others in chains of subsets/redefines of depth 3</li>
+	 * <li>ENUMS: enums of 5 literals, and unions of them (one per 10 enums)</li>
+	 * <li>INSTANCES: instances of 10 classes of 2 attributes, nested up to depth 5</li>
+	 * </ul>
+	 * 
+	 * @param kind the kind of elements
+	 * @param size the number of elements
+	 * @return the generator
+	 */
+	static ModelGenerator createGenerator(ElementKind kind, int size) {
+		final ModelGenerator.Options options = createGeneratorOptions(kind.name().toLowerCase());
+		switch (kind) {
+			case CLASSES:
+				options.classes = size;
+				options.inheritanceDepth = 10;
+				break;
+			case ATTRIBUTES:
+				options.classes = Math.max(1, size / 10);
+				options.attributes = 10;
+				break;
+			case REFERENCES:
+				options.classes = Math.max(1, size / 10);
+				options.references = 10;
+				options.opposites = 2;
+				options.subsetsDepth = 3;
+				break;
+			case ENUMS:
+				options.enums = size;
+				options.unions = size / 10;
+				break;
+			case INSTANCES:
+				options.classes = 10;
+				options.attributes = 2;
+				options.instances = size;
+				options.instanceDepth = 5;
+				break;
+		}
+		return new ModelGenerator(options);
+	}
+
+	/**
+	 * Creates an Ecore resource with a package of the given number of classes, each with
+	 * an attribute and a reference.
+	 * 
+	 * @param resourceSet the resource set to create the resource in
+	 * @param classCount the number of classes
+	 * @return the created resource
+	 */
+	static Resource createEcoreResource(ResourceSet resourceSet, int classCount) {
+		final ModelGenerator.Options options = createGeneratorOptions("benchmark");
+		options.classes = classCount;
+		options.attributes = 1;
+		options.references = 1;
+		return new ModelGenerator(options).generateEcoreResource(resourceSet, URI.createFileURI("benchmark/benchmark.ecore"));
+	}
+
+	/**
+	 * Creates the input resource to convert for the given kind of elements: the Ecore resource, or
+	 * for instances the XMI resource (with the Ecore resource in the same resource set)
+	 * 
+	 * @param resourceSet the resource set to create the resource in
+	 * @param kind the kind of elements
+	 * @param size the number of elements
+	 * @return the created resource
+	 */
+	static Resource createInput(ResourceSet resourceSet, ElementKind kind, int size) {
+		final ModelGenerator generator = createGenerator(kind, size);
+		final Resource ecoreResource = generator.generateEcoreResource(resourceSet, URI.createFileURI("benchmark/"+kind.name().toLowerCase()+".ecore"));
+		if (kind == ElementKind.INSTANCES) {
+			final EPackage ePackage = (EPackage) ecoreResource.getContents().get(0);
+			return generator.generateInstanceResource(resourceSet, ePackage, URI.createFileURI("benchmark/"+kind.name().toLowerCase()+".xmi"));
+		}
+		return ecoreResource;
+	}
+
+	private static ModelGenerator.Options createGeneratorOptions(String name) {
+		final ModelGenerator.Options options = new ModelGenerator.Options();
+		options.name = name;
+		options.classes = 0;
+		options.attributes = 0;
+		options.references = 0;
+		options.opposites = 0;
+		options.subsetsDepth = 0;
+		options.enums = 0;
+		options.unions = 0;
+		options.instances = 0;
+		return options;
+	}
+
+	/**
+	 * Creates the conversion options
+	 * 
+	 * @param outputFolder the output folder
+	 * @param outputFileExtension the output file extension
+	 * @return the options
+	 */
+	static Options createOptions(Path outputFolder, String outputFileExtension) {
+		final Options options = new Options();
+		options.outputFolderPath = outputFolder.toString();
+		options.outputFileExtension = outputFileExtension;
+		options.mapNamespaces();
+		return options;
+	}
+
+	/**
+	 * Creates the output resource set the same way the application does
+	 * 
+	 * @return the output resource set
+	 */
+	static ResourceSet createOutputResourceSet() {
+		final ResourceSet resourceSet = new ResourceSetImpl();
+		resourceSet.getLoadOptions().put(OmlConstants.RESOLVE_IRI_USING_RESOURCE_SET, Boolean.TRUE);
+		resourceSet.eAdapters().add(new ECrossReferenceAdapter());
+		return resourceSet;
+	}
+
+	/**
+	 * Converts the given input resource with a started builder, leaving it to be finished
+	 * 
+	 * @param input the input resource
+	 * @param options the conversion options
+	 * @return the started builder holding the conversion
+	 */
+	static OmlBuilder convert(Resource input, Options options) {
+		final OmlBuilder builder = new OmlBuilder(createOutputResourceSet());
+		builder.start();
+		new Ecore2Oml(input, builder, options, new IriCache(), new AbstractnessCache()).run();
+		return builder;
+	}
+}
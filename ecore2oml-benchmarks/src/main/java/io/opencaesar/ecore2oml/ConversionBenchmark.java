@@ -0,0 +1,75 @@
+/**
+ * 
+ * Copyright 2022 Modelware Solutions LLC and CEA-LIST.
+ * 
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * 
+ */
+package io.opencaesar.ecore2oml;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.util.concurrent.TimeUnit;
+
+import org.eclipse.emf.ecore.resource.Resource;
+import org.eclipse.emf.ecore.resource.impl.ResourceSetImpl;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import io.opencaesar.ecore2oml.BenchmarkModels.ElementKind;
+import io.opencaesar.ecore2oml.Ecore2OmlApp.Options;
+import io.opencaesar.oml.util.OmlBuilder;
+
+/**
+ * Measures the conversion of models made of a given number of elements of a given kind 
+ * (see {@link BenchmarkModels#createGenerator(ElementKind, int)})
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3)
+@Measurement(iterations = 5)
+@Fork(1)
+public class ConversionBenchmark {
+
+	@Param({"CLASSES", "ATTRIBUTES", "REFERENCES", "ENUMS", "INSTANCES"})
+	public ElementKind kind;
+
+	@Param({"1000", "10000"})
+	public int size;
+
+	private Resource input;
+	private Options options;
+
+	@Setup(Level.Trial)
+	public void setup() throws IOException {
+		BenchmarkModels.setupOml();
+		input = BenchmarkModels.createInput(new ResourceSetImpl(), kind, size);
+		options = BenchmarkModels.createOptions(Files.createTempDirectory("ecore2oml"), "oml");
+	}
+
+	@Benchmark
+	public OmlBuilder run() {
+		return BenchmarkModels.convert(input, options);
+	}
+}
@@ -0,0 +1,122 @@
+/**
+ * 
+ * Copyright 2022 Modelware Solutions LLC and CEA-LIST.
+ * 
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * 
+ */
+package io.opencaesar.ecore2oml;
+
+import java.io.BufferedOutputStream;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.file.Files;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+import org.eclipse.emf.ecore.resource.Resource;
+import org.eclipse.emf.ecore.resource.impl.ResourceSetImpl;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import io.opencaesar.ecore2oml.Ecore2OmlApp.Options;
+import io.opencaesar.oml.util.OmlBuilder;
+
+/**
+ * Measures the finishing of the Oml builder (resolving its deferred references) after a conversion 
+ * and the saving of its output files (in the textual syntax) to disk.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3)
+@Measurement(iterations = 5)
+@Fork(1)
+public class FinishAndSaveBenchmark {
+
+	/**
+	 * A conversion left to finish, redone before each finish since finishing changes it
+	 */
+	@State(Scope.Benchmark)
+	public static class Converted {
+		@Param({"1000", "10000"})
+		public int size;
+
+		private Resource input;
+		private Options options;
+		private OmlBuilder builder;
+
+		@Setup(Level.Trial)
+		public void setupInput() throws IOException {
+			BenchmarkModels.setupOml();
+			input = BenchmarkModels.createEcoreResource(new ResourceSetImpl(), size);
+			options = BenchmarkModels.createOptions(Files.createTempDirectory("ecore2oml"), "oml");
+		}
+
+		@Setup(Level.Invocation)
+		public void setupConversion() {
+			builder = BenchmarkModels.convert(input, options);
+		}
+	}
+
+	/**
+	 * A finished conversion ready to be saved
+	 */
+	@State(Scope.Benchmark)
+	public static class Finished {
+		@Param({"1000", "10000"})
+		public int size;
+
+		private List<Resource> outputResources;
+
+		@Setup(Level.Trial)
+		public void setup() throws IOException {
+			BenchmarkModels.setupOml();
+			final Resource input = BenchmarkModels.createEcoreResource(new ResourceSetImpl(), size);
+			final Options options = BenchmarkModels.createOptions(Files.createTempDirectory("ecore2oml"), "oml");
+			final OmlBuilder builder = BenchmarkModels.convert(input, options);
+			outputResources = new ArrayList<>(builder.getResourceSet().getResources());
+			builder.finish();
+		}
+	}
+
+	@Benchmark
+	public OmlBuilder finish(Converted converted) {
+		converted.builder.finish();
+		return converted.builder;
+	}
+
+	@Benchmark
+	public void save(Finished finished) throws IOException {
+		for (Resource resource : finished.outputResources) {
+			final File file = new File(resource.getURI().toFileString());
+			file.getParentFile().mkdirs();
+			try (OutputStream out = new BufferedOutputStream(new FileOutputStream(file), 1 << 20)) {
+				resource.save(out, Collections.EMPTY_MAP);
+			}
+		}
+	}
+}
@@ -0,0 +1,127 @@
+/**
+ * 
+ * Copyright 2022 Modelware Solutions LLC and CEA-LIST.
+ * 
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * 
+ */
+package io.opencaesar.ecore2oml;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Collections;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+import org.eclipse.emf.common.util.URI;
+import org.eclipse.emf.ecore.EPackage;
+import org.eclipse.emf.ecore.resource.Resource;
+import org.eclipse.emf.ecore.resource.ResourceSet;
+import org.eclipse.emf.ecore.resource.impl.ResourceSetImpl;
+import org.eclipse.emf.ecore.xmi.XMLResource;
+import org.eclipse.emf.ecore.xmi.impl.EcoreResourceFactoryImpl;
+import org.eclipse.emf.ecore.xmi.impl.XMIResourceFactoryImpl;
+import org.eclipse.emf.ecore.xmi.impl.XMLResourceFactoryImpl;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+
+import io.opencaesar.ecore2oml.BenchmarkModels.ElementKind;
+
+/**
+ * Measures the loading of the input files: an Ecore file of the given number of classes and
+ * an XMI instance file of the given number of objects, loaded or streamed, with the default
+ * load options or with the fast load profile.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3)
+@Measurement(iterations = 5)
+@Fork(1)
+public class LoadBenchmark {
+
+	@Param({"1000", "10000"})
+	public int size;
+
+	@Param({"false", "true"})
+	public boolean fastLoad;
+
+	private URI ecoreURI;
+	private URI metamodelURI;
+	private URI instanceURI;
+
+	@Setup(Level.Trial)
+	public void setup() throws IOException {
+		final Path folder = Files.createTempDirectory("ecore2oml");
+		final Map<Object, Object> saveOptions = Collections.singletonMap(XMLResource.OPTION_SCHEMA_LOCATION, Boolean.TRUE);
+		
+		final ResourceSet resourceSet = new ResourceSetImpl();
+		final Resource ecore = BenchmarkModels.createEcoreResource(resourceSet, size);
+		ecoreURI = URI.createFileURI(folder.resolve("classes.ecore").toString());
+		ecore.setURI(ecoreURI);
+		ecore.save(saveOptions);
+		
+		final ModelGenerator generator = BenchmarkModels.createGenerator(ElementKind.INSTANCES, size);
+		metamodelURI = URI.createFileURI(folder.resolve("instances.ecore").toString());
+		final Resource metamodel = generator.generateEcoreResource(resourceSet, metamodelURI);
+		metamodel.save(saveOptions);
+		
+		instanceURI = URI.createFileURI(folder.resolve("instances.xmi").toString());
+		final Resource instances = generator.generateInstanceResource(resourceSet, (EPackage) metamodel.getContents().get(0), instanceURI);
+		instances.save(saveOptions);
+	}
+
+	@Benchmark
+	public Resource loadEcore() {
+		return createInputResourceSet().getResource(ecoreURI, true);
+	}
+
+	@Benchmark
+	public Resource loadInstances() {
+		final ResourceSet resourceSet = createInputResourceSet();
+		resourceSet.getResource(metamodelURI, true);
+		return resourceSet.getResource(instanceURI, true);
+	}
+
+	@Benchmark
+	public void streamInstances(Blackhole blackhole) throws IOException {
+		final ResourceSet resourceSet = createInputResourceSet();
+		resourceSet.getResource(metamodelURI, true);
+		new XmiInstanceReader(instanceURI, resourceSet).read((fragment, type) -> blackhole.consume(fragment));
+	}
+
+	private ResourceSet createInputResourceSet() {
+		final ResourceSet resourceSet = new ResourceSetImpl();
+		final Map<String, Object> factories = Resource.Factory.Registry.INSTANCE.getExtensionToFactoryMap();
+		factories.put("*", new XMLResourceFactoryImpl());
+		// the generated files are saved as XMI, which the XML factory cannot load
+		factories.put("ecore", new EcoreResourceFactoryImpl());
+		factories.put("xmi", new XMIResourceFactoryImpl());
+		if (fastLoad) {
+			FastLoad.configure(resourceSet);
+		}
+		return resourceSet;
+	}
+}
@@ -0,0 +1,414 @@
+/**
+ * 
+ * Copyright 2022 Modelware Solutions LLC and CEA-LIST.
+ * 
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * 
+ */
+package io.opencaesar.ecore2oml;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Deque;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+
+import org.apache.log4j.LogManager;
+import org.apache.log4j.Logger;
+import org.eclipse.emf.common.util.URI;
+import org.eclipse.emf.ecore.EAnnotation;
+import org.eclipse.emf.ecore.EAttribute;
+import org.eclipse.emf.ecore.EClass;
+import org.eclipse.emf.ecore.EClassifier;
+import org.eclipse.emf.ecore.EDataType;
+import org.eclipse.emf.ecore.EEnum;
+import org.eclipse.emf.ecore.EEnumLiteral;
+import org.eclipse.emf.ecore.EObject;
+import org.eclipse.emf.ecore.EPackage;
+import org.eclipse.emf.ecore.EReference;
+import org.eclipse.emf.ecore.EStructuralFeature;
+import org.eclipse.emf.ecore.EcoreFactory;
+import org.eclipse.emf.ecore.EcorePackage;
+import org.eclipse.emf.ecore.resource.Resource;
+import org.eclipse.emf.ecore.resource.ResourceSet;
+import org.eclipse.emf.ecore.resource.impl.ResourceSetImpl;
+import org.eclipse.emf.ecore.util.EcoreUtil;
+import org.eclipse.emf.ecore.util.ExtendedMetaData;
+import org.eclipse.emf.ecore.xmi.XMLResource;
+import org.eclipse.emf.ecore.xmi.impl.EcoreResourceFactoryImpl;
+import org.eclipse.emf.ecore.xmi.impl.XMIResourceImpl;
+
+import com.beust.jcommander.JCommander;
+import com.beust.jcommander.Parameter;
+
+/**
+ * A generator of synthetic Ecore packages, and of XMI instance files conforming to them, of configurable
+ * size and shape, for benchmarking and stress testing the conversion.
+ * 
+ * The generation is reproducible: the same options (including the seed) give the same models.
+ * 
+ * Every generated class specializes (directly or through a chain of classes) an Element class, which 
+ * has a name and contains Elements, so instances of any class can be nested to any depth.
+ */
+public class ModelGenerator {
+
+	private static final Logger LOGGER = LogManager.getLogger(ModelGenerator.class);
+
+	private static final String NS_URI_PREFIX = "http://opencaesar.io/generated/";
+	private static final String ENUMERATOR = "org.eclipse.emf.common.util.Enumerator";
+
+	/**
+	 * The generation options
+	 */
+	public static class Options {
+		@Parameter(
+			names= {"--output-folder-path", "-o"}, 
+			description="Location of the output folder (Required)", 
+			required=true)
+		public String outputFolderPath;
+
+		@Parameter(
+			names= {"--name", "-n"}, 
+			description="Name of the generated package and files (Optional, generated by default)")
+		public String name = "generated";
+
+		@Parameter(
+			names= {"--classes", "-c"}, 
+			description="Number of classes (Optional, 100 by default)")
+		public int classes = 100;
+
+		@Parameter(
+			names= {"--attributes", "-a"}, 
+			description="Number of attributes per class (Optional, 5 by default)")
+		public int attributes = 5;
+
+		@Parameter(
+			names= {"--references", "-r"}, 
+			description="Number of references per class, including those with opposites (Optional, 5 by default)")
+		public int references = 5;
+
+		@Parameter(
+			names= {"--opposites", "-op"}, 
+			description="Number of references per class that have an opposite (Optional, 1 by default)")
+		public int opposites = 1;
+
+		@Parameter(
+			names= {"--subsets-depth", "-sd"}, 
+			description="Length of the chains of subsets/redefines annotations between the other references of a class (Optional, 2 by default)")
+		public int subsetsDepth = 2;
+
+		@Parameter(
+			names= {"--inheritance-depth", "-id"}, 
+			description="Length of the chains of specializing classes (Optional, 3 by default)")
+		public int inheritanceDepth = 3;
+
+		@Parameter(
+			names= {"--enums", "-e"}, 
+			description="Number of enums (Optional, 5 by default)")
+		public int enums = 5;
+
+		@Parameter(
+			names= {"--enum-literals", "-el"}, 
+			description="Number of literals per enum (Optional, 5 by default)")
+		public int enumLiterals = 5;
+
+		@Parameter(
+			names= {"--unions", "-u"}, 
+			description="Number of ExtendedMetaData unions of two enums (Optional, 2 by default)")
+		public int unions = 2;
+
+		@Parameter(
+			names= {"--instance-files", "-if"}, 
+			description="Number of XMI instance files (Optional, 1 by default)")
+		public int instanceFiles = 1;
+
+		@Parameter(
+			names= {"--instances", "-in"}, 
+			description="Number of instances per instance file (Optional, 1000 by default)")
+		public int instances = 1000;
+
+		@Parameter(
+			names= {"--instance-depth", "-dp"}, 
+			description="Maximum containment depth of the instances (Optional, 5 by default)")
+		public int instanceDepth = 5;
+
+		@Parameter(
+			names= {"--seed", "-s"}, 
+			description="Seed of the random choices (Optional, 0 by default)")
+		public long seed = 0;
+
+		@Parameter(
+			names= {"--help","-h"}, 
+			description="Displays summary of options", 
+			help=true) 
+		public boolean help;
+	}
+
+	private final Options options;
+	private final Random random;
+
+	/**
+	 * Creates a new ModelGenerator object
+	 * 
+	 * @param options the generation options
+	 */
+	public ModelGenerator(Options options) {
+		this.options = options;
+		this.random = new Random(options.seed);
+	}
+
+	/**
+	 * Generates the Ecore file and the instance files in the output folder
+	 * 
+	 * @param args the generation options
+	 * @throws IOException when the files cannot be saved
+	 */
+	public static void main(String ... args) throws IOException {
+		final Options options = new Options();
+		final JCommander builder = JCommander.newBuilder().addObject(options).build();
+		builder.parse(args);
+		if (options.help) {
+			builder.usage();
+			return;
+		}
+		new ModelGenerator(options).generate();
+	}
+
+	/**
+	 * Generates the Ecore file and the instance files in the output folder
+	 * 
+	 * @throws IOException when the files cannot be saved
+	 */
+	public void generate() throws IOException {
+		final Map<Object, Object> saveOptions = Collections.singletonMap(XMLResource.OPTION_SCHEMA_LOCATION, Boolean.TRUE);
+		final ResourceSet resourceSet = new ResourceSetImpl();
+		
+		final Resource ecoreResource = generateEcoreResource(resourceSet, getFileURI(options.name+".ecore"));
+		ecoreResource.save(saveOptions);
+		LOGGER.info("Generated: "+ecoreResource.getURI());
+		
+		final EPackage ePackage = (EPackage) ecoreResource.getContents().get(0);
+		for (int i = 0; i < options.instanceFiles; i++) {
+			final Resource instanceResource = generateInstanceResource(resourceSet, ePackage, getFileURI(options.name+"_"+i+".xmi"));
+			instanceResource.save(saveOptions);
+			LOGGER.info("Generated: "+instanceResource.getURI());
+			resourceSet.getResources().remove(instanceResource);
+		}
+	}
+
+	/**
+	 * Generates an Ecore resource with the package
+	 * 
+	 * @param resourceSet the resource set to create the resource in
+	 * @param uri the URI of the resource
+	 * @return the generated resource
+	 */
+	public Resource generateEcoreResource(ResourceSet resourceSet, URI uri) {
+		final Resource resource = new EcoreResourceFactoryImpl().createResource(uri);
+		resourceSet.getResources().add(resource);
+		resource.getContents().add(generatePackage());
+		return resource;
+	}
+
+	/**
+	 * Generates the package
+	 * 
+	 * @return the generated package
+	 */
+	public EPackage generatePackage() {
+		final EcoreFactory factory = EcoreFactory.eINSTANCE;
+		final EPackage ePackage = factory.createEPackage();
+		ePackage.setName(options.name);
+		ePackage.setNsPrefix(options.name);
+		ePackage.setNsURI(NS_URI_PREFIX+options.name);
+		
+		// enums and unions of them
+		final List<EDataType> dataTypes = new ArrayList<>(List.of(EcorePackage.Literals.ESTRING, EcorePackage.Literals.EINT, EcorePackage.Literals.EBOOLEAN, EcorePackage.Literals.EDOUBLE));
+		final List<EEnum> enums = new ArrayList<>();
+		for (int i = 0; i < options.enums; i++) {
+			final EEnum eEnum = factory.createEEnum();
+			eEnum.setName("Enum"+i);
+			for (int j = 0; j < options.enumLiterals; j++) {
+				final EEnumLiteral literal = factory.createEEnumLiteral();
+				literal.setName("literal"+j);
+				literal.setValue(j);
+				eEnum.getELiterals().add(literal);
+			}
+			ePackage.getEClassifiers().add(eEnum);
+			enums.add(eEnum);
+		}
+		dataTypes.addAll(enums);
+		for (int i = 0; i < options.unions && !enums.isEmpty(); i++) {
+			final EDataType union = factory.createEDataType();
+			union.setName("Union"+i);
+			union.setInstanceClassName(ENUMERATOR);
+			final EAnnotation annotation = factory.createEAnnotation();
+			annotation.setSource(ExtendedMetaData.ANNOTATION_URI);
+			annotation.getDetails().put("name", union.getName());
+			annotation.getDetails().put("memberTypes", enums.get((2*i) % enums.size()).getName()+" "+enums.get((2*i+1) % enums.size()).getName());
+			union.getEAnnotations().add(annotation);
+			ePackage.getEClassifiers().add(union);
+			dataTypes.add(union);
+		}
+		
+		// the root class of all classes
+		final EClass element = factory.createEClass();
+		element.setName("Element");
+		ePackage.getEClassifiers().add(element);
+		addAttribute(element, "name", EcorePackage.Literals.ESTRING);
+		final EReference contents = addReference(element, "contents", element);
+		contents.setContainment(true);
+		contents.setUpperBound(EStructuralFeature.UNBOUNDED_MULTIPLICITY);
+		
+		// the classes in chains of specialization
+		final List<EClass> classes = new ArrayList<>();
+		for (int i = 0; i < options.classes; i++) {
+			final EClass eClass = factory.createEClass();
+			eClass.setName("Class"+i);
+			eClass.getESuperTypes().add((options.inheritanceDepth > 0 && i % options.inheritanceDepth != 0) ? classes.get(i - 1) : element);
+			ePackage.getEClassifiers().add(eClass);
+			classes.add(eClass);
+		}
+		
+		// the features, named after their class to be unique in any class hierarchy
+		for (int i = 0; i < classes.size(); i++) {
+			final EClass eClass = classes.get(i);
+			final String prefix = "class"+i;
+			for (int j = 0; j < options.attributes; j++) {
+				addAttribute(eClass, prefix+"Attribute"+j, dataTypes.get(random.nextInt(dataTypes.size())));
+			}
+			EReference previous = null;
+			for (int j = 0; j < options.references; j++) {
+				final EReference reference;
+				if (j < options.opposites) {
+					final EClass target = classes.get(random.nextInt(classes.size()));
+					reference = addReference(eClass, prefix+"Reference"+j, target);
+					final EReference opposite = addReference(target, prefix+"Reference"+j+"Opposite", eClass);
+					reference.setEOpposite(opposite);
+					opposite.setEOpposite(reference);
+				} else if (previous != null && options.subsetsDepth > 0 && (j - options.opposites) % (options.subsetsDepth + 1) != 0) {
+					// alternate between subsets and redefines along the chain
+					reference = addReference(eClass, prefix+"Reference"+j, previous.getEReferenceType());
+					addAnnotationReference(reference, ((j - options.opposites) % 2 == 1) ? "subsets" : "redefines", previous);
+				} else {
+					reference = addReference(eClass, prefix+"Reference"+j, classes.get(random.nextInt(classes.size())));
+					reference.setUpperBound(EStructuralFeature.UNBOUNDED_MULTIPLICITY);
+				}
+				previous = (j < options.opposites) ? null : reference;
+			}
+		}
+		
+		return ePackage;
+	}
+
+	/**
+	 * Generates an XMI instance resource with the configured number of instances of the package's 
+	 * classes (chosen randomly), nested breadth first up to the configured depth
+	 * 
+	 * @param resourceSet the resource set to create the resource in
+	 * @param ePackage the package generated by this generator
+	 * @param uri the URI of the resource
+	 * @return the generated resource
+	 */
+	@SuppressWarnings("unchecked")
+	public Resource generateInstanceResource(ResourceSet resourceSet, EPackage ePackage, URI uri) {
+		final Resource resource = new XMIResourceImpl(uri);
+		resourceSet.getResources().add(resource);
+		
+		final List<EClass> classes = new ArrayList<>();
+		for (EClassifier classifier : ePackage.getEClassifiers()) {
+			if (classifier instanceof EClass) {
+				classes.add((EClass) classifier);
+			}
+		}
+		final EClass element = (EClass) ePackage.getEClassifier("Element");
+		final EStructuralFeature contents = element.getEStructuralFeature("contents");
+		final int depth = Math.max(1, options.instanceDepth);
+		final int fanOut = Math.max(1, (int) Math.ceil(Math.pow(options.instances, 1.0 / depth)));
+		
+		// each pending entry is an instance and its depth
+		final Deque<Object[]> pending = new ArrayDeque<>();
+		int count = 0;
+		while (count < options.instances) {
+			final EObject root = createInstance(classes.get(random.nextInt(classes.size())), count++);
+			resource.getContents().add(root);
+			pending.add(new Object[] {root, 1});
+			while (!pending.isEmpty() && count < options.instances) {
+				final Object[] entry = pending.poll();
+				final int level = (Integer) entry[1];
+				if (level < depth) {
+					for (int i = 0; i < fanOut && count < options.instances; i++) {
+						final EObject child = createInstance(classes.get(random.nextInt(classes.size())), count++);
+						((List<EObject>) ((EObject)entry[0]).eGet(contents)).add(child);
+						pending.add(new Object[] {child, level + 1});
+					}
+				}
+			}
+			pending.clear();
+		}
+		return resource;
+	}
+
+	private EObject createInstance(EClass eClass, int index) {
+		final EObject object = EcoreUtil.create(eClass);
+		for (EAttribute attribute : eClass.getEAllAttributes()) {
+			final EClassifier type = attribute.getEType();
+			if (type == EcorePackage.Literals.ESTRING) {
+				object.eSet(attribute, attribute.getName().equals("name") ? "element"+index : "value"+random.nextInt(1000));
+			} else if (type == EcorePackage.Literals.EINT) {
+				object.eSet(attribute, random.nextInt());
+			} else if (type == EcorePackage.Literals.EBOOLEAN) {
+				object.eSet(attribute, random.nextBoolean());
+			} else if (type == EcorePackage.Literals.EDOUBLE) {
+				object.eSet(attribute, random.nextDouble());
+			} else if (type instanceof EEnum) {
+				final List<EEnumLiteral> literals = ((EEnum)type).getELiterals();
+				if (!literals.isEmpty()) {
+					object.eSet(attribute, literals.get(random.nextInt(literals.size())).getInstance());
+				}
+			}
+		}
+		return object;
+	}
+
+	private URI getFileURI(String fileName) {
+		return URI.createFileURI(new File(options.outputFolderPath, fileName).getAbsolutePath());
+	}
+
+	private static EAttribute addAttribute(EClass eClass, String name, EDataType type) {
+		final EAttribute attribute = EcoreFactory.eINSTANCE.createEAttribute();
+		attribute.setName(name);
+		attribute.setEType(type);
+		eClass.getEStructuralFeatures().add(attribute);
+		return attribute;
+	}
+
+	private static EReference addReference(EClass eClass, String name, EClass type) {
+		final EReference reference = EcoreFactory.eINSTANCE.createEReference();
+		reference.setName(name);
+		reference.setEType(type);
+		eClass.getEStructuralFeatures().add(reference);
+		return reference;
+	}
+
+	private static void addAnnotationReference(EStructuralFeature feature, String source, EStructuralFeature reference) {
+		final EAnnotation annotation = EcoreFactory.eINSTANCE.createEAnnotation();
+		annotation.setSource(source);
+		annotation.getReferences().add(reference);
+		feature.getEAnnotations().add(annotation);
+	}
+}
@@ -0,0 +1,101 @@
+/**
+ * 
+ * Copyright 2022 Modelware Solutions LLC and CEA-LIST.
+ * 
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * 
+ */
+package io.opencaesar.ecore2oml;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+import org.eclipse.emf.ecore.resource.Resource;
+import org.eclipse.emf.ecore.resource.impl.ResourceSetImpl;
+import org.openjdk.jmh.annotations.AuxCounters;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import io.opencaesar.oml.util.OmlBuilder;
+
+/**
+ * Compares the save time and size of the same converted model in the OML output formats.
+ * 
+ * The resources are saved to memory to leave the disk out of the measurement, and the number
+ * of bytes written over each iteration is reported as the secondary "bytes" result, which
+ * divided by the number of saves in the iteration gives the size of one save.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3)
+@Measurement(iterations = 5)
+@Fork(1)
+public class OutputFormatBenchmark {
+
+	@Param({"oml", "omlxmi", "omljson"})
+	public String format;
+
+	@Param({"100", "1000"})
+	public int classes;
+
+	private List<Resource> outputResources;
+
+	/**
+	 * The number of bytes written by the saves of the iteration
+	 */
+	@AuxCounters(AuxCounters.Type.EVENTS)
+	@State(Scope.Thread)
+	public static class SavedSize {
+		public long bytes;
+
+		@Setup(Level.Iteration)
+		public void reset() {
+			bytes = 0;
+		}
+	}
+
+	@Setup(Level.Trial)
+	public void setup() throws IOException {
+		BenchmarkModels.setupOml();
+		final var options = BenchmarkModels.createOptions(Files.createTempDirectory("ecore2oml"), format);
+		final var input = BenchmarkModels.createEcoreResource(new ResourceSetImpl(), classes);
+		final OmlBuilder builder = BenchmarkModels.convert(input, options);
+		outputResources = new ArrayList<>(builder.getResourceSet().getResources());
+		builder.finish();
+	}
+
+	@Benchmark
+	public void save(SavedSize size) throws IOException {
+		for (Resource resource : outputResources) {
+			final ByteArrayOutputStream out = new ByteArrayOutputStream();
+			resource.save(out, Collections.EMPTY_MAP);
+			size.bytes += out.size();
+		}
+	}
+}
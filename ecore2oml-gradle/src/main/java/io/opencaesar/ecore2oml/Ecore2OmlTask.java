@@ -6,13 +6,16 @@ import java.util.List;
 
 import org.gradle.api.DefaultTask;
 import org.gradle.api.file.DirectoryProperty;
+import org.gradle.api.file.RegularFileProperty;
 import org.gradle.api.provider.ListProperty;
 import org.gradle.api.provider.Property;
 import org.gradle.api.tasks.Input;
 import org.gradle.api.tasks.InputDirectory;
 import org.gradle.api.tasks.InputFiles;
+import org.gradle.api.tasks.Internal;
 import org.gradle.api.tasks.Optional;
 import org.gradle.api.tasks.OutputDirectory;
+import org.gradle.api.tasks.OutputFile;
 import org.gradle.api.tasks.TaskAction;
 import org.gradle.api.tasks.TaskExecutionException;
 import org.gradle.work.Incremental;
@@ -54,6 +57,15 @@ public abstract class Ecore2OmlTask extends DefaultTask {
     @Incremental
     public abstract ListProperty<File> getReferencedEcorePaths();
 
+    /**
+	 * Whether to load the referenced Ecore files only when one of their packages is needed
+	 * 
+	 * @return Boolean Property
+	 */
+    @Optional
+    @Internal
+    public abstract Property<Boolean> getLazyReferencedEcores();
+
     /**
 	 * The file extensions for input Ecore files
 	 * 
@@ -63,6 +75,24 @@ public abstract class Ecore2OmlTask extends DefaultTask {
     @Input
     public abstract ListProperty<String> getInputFileExtensions();
 
+    /**
+	 * The globs of input files to include
+	 * 
+	 * @return String List Property
+	 */
+    @Optional
+    @Input
+    public abstract ListProperty<String> getIncludes();
+
+    /**
+	 * The globs of input files or folders to exclude
+	 * 
+	 * @return String List Property
+	 */
+    @Optional
+    @Input
+    public abstract ListProperty<String> getExcludes();
+
     /**
 	 * The file extension for output OML files
 	 * 
@@ -81,6 +111,114 @@ public abstract class Ecore2OmlTask extends DefaultTask {
     @Input
     public abstract ListProperty<String> getNamespaceMap();
 
+    /**
+	 * The number of threads used to load (and optionally convert) the input files and to save the omlxmi or omljson output files
+	 * 
+	 * @return Integer Property
+	 */
+    @Optional
+    @Internal
+    public abstract Property<Integer> getThreads();
+
+    /**
+	 * Whether to convert the input files concurrently
+	 * 
+	 * @return Boolean Property
+	 */
+    @Optional
+    @Internal
+    public abstract Property<Boolean> getParallelConversion();
+
+    /**
+	 * Whether to stream the input instance files instead of loading them
+	 * 
+	 * @return Boolean Property
+	 */
+    @Optional
+    @Input
+    public abstract Property<Boolean> getStreamInstances();
+
+    /**
+	 * The number of instances converted between progress reports
+	 * 
+	 * @return Integer Property
+	 */
+    @Optional
+    @Internal
+    public abstract Property<Integer> getProgressInterval();
+
+    /**
+	 * The number of instances of a loaded input file converted between releases of their converted containment subtrees
+	 * 
+	 * @return Integer Property
+	 */
+    @Optional
+    @Internal
+    public abstract Property<Integer> getInstanceChunkSize();
+
+    /**
+	 * The maximum number of instances per shard of an output description
+	 * 
+	 * @return Integer Property
+	 */
+    @Optional
+    @Input
+    public abstract Property<Integer> getDescriptionShardSize();
+
+    /**
+	 * Whether to write the streamed instance files directly as OML text descriptions
+	 * 
+	 * @return Boolean Property
+	 */
+    @Optional
+    @Input
+    public abstract Property<Boolean> getDirectDescriptionOutput();
+
+    /**
+	 * Whether to build the output without a cross reference adapter
+	 * 
+	 * @return Boolean Property
+	 */
+    @Optional
+    @Internal
+    public abstract Property<Boolean> getLean();
+
+    /**
+	 * Whether to load the input files with the tuned load profile
+	 * 
+	 * @return Boolean Property
+	 */
+    @Optional
+    @Internal
+    public abstract Property<Boolean> getFastLoad();
+
+    /**
+	 * Whether to unload each input file once no remaining conversion needs it
+	 * 
+	 * @return Boolean Property
+	 */
+    @Optional
+    @Internal
+    public abstract Property<Boolean> getReleaseInputs();
+
+    /**
+	 * Path of the JSON report of the conversion
+	 * 
+	 * @return File Property
+	 */
+    @Optional
+    @OutputFile
+    public abstract RegularFileProperty getReport();
+
+    /**
+	 * Path of the folder caching the loaded input files (does not affect the outputs)
+	 * 
+	 * @return Directory Property
+	 */
+    @Optional
+    @Internal
+    public abstract DirectoryProperty getCacheFolder();
+
     /**
 	 * The debug flag
 	 * 
@@ -116,6 +254,18 @@ public abstract class Ecore2OmlTask extends DefaultTask {
     		    args.add(ext);
         	}
         }
+        if (getIncludes().isPresent()) {
+        	for (var glob : getIncludes().get()) {
+    		    args.add("-in");
+    		    args.add(glob);
+        	}
+        }
+        if (getExcludes().isPresent()) {
+        	for (var glob : getExcludes().get()) {
+    		    args.add("-ex");
+    		    args.add(glob);
+        	}
+        }
         if (getOutputFileExtension().isPresent()) {
 		    args.add("-oe");
 		    args.add(getOutputFileExtension().get());
@@ -125,6 +275,51 @@ public abstract class Ecore2OmlTask extends DefaultTask {
     		    args.add("-ns");
     		    args.add(ns);
         	}
+        }
+        if (getThreads().isPresent()) {
+		    args.add("-t");
+		    args.add(getThreads().get().toString());
+        }
+		if (getParallelConversion().isPresent() && getParallelConversion().get()) {
+		    args.add("-pc");
+	    }
+		if (getStreamInstances().isPresent() && getStreamInstances().get()) {
+		    args.add("-si");
+	    }
+        if (getProgressInterval().isPresent()) {
+		    args.add("-pi");
+		    args.add(getProgressInterval().get().toString());
+        }
+        if (getInstanceChunkSize().isPresent()) {
+		    args.add("-ic");
+		    args.add(getInstanceChunkSize().get().toString());
+        }
+        if (getDescriptionShardSize().isPresent()) {
+		    args.add("-ds");
+		    args.add(getDescriptionShardSize().get().toString());
+        }
+		if (getDirectDescriptionOutput().isPresent() && getDirectDescriptionOutput().get()) {
+		    args.add("-dd");
+	    }
+		if (getLean().isPresent() && getLean().get()) {
+		    args.add("-ln");
+	    }
+		if (getFastLoad().isPresent() && getFastLoad().get()) {
+		    args.add("-fl");
+	    }
+		if (getLazyReferencedEcores().isPresent() && getLazyReferencedEcores().get()) {
+		    args.add("-lr");
+	    }
+		if (getReleaseInputs().isPresent() && getReleaseInputs().get()) {
+		    args.add("-ri");
+	    }
+        if (getReport().isPresent()) {
+		    args.add("-rp");
+		    args.add(getReport().get().getAsFile().getAbsolutePath());
+        }
+        if (getCacheFolder().isPresent()) {
+		    args.add("-cf");
+		    args.add(getCacheFolder().get().getAsFile().getAbsolutePath());
         }
 		if (getDebug().isPresent() && getDebug().get()) {
 		    args.add("-d");
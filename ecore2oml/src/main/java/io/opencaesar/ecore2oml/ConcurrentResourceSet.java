@@ -0,0 +1,85 @@
+/**
+ * 
+ * Copyright 2022 Modelware Solutions LLC and CEA-LIST.
+ * 
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * 
+ */
+package io.opencaesar.ecore2oml;
+
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.Map;
+
+import org.eclipse.emf.common.util.ECollections;
+import org.eclipse.emf.common.util.URI;
+import org.eclipse.emf.ecore.resource.Resource;
+import org.eclipse.emf.ecore.resource.impl.ResourceSetImpl;
+
+/**
+ * A resource set in which resources can be created from several threads at once.
+ *
+ * Each thread declares the partition (e.g., the index of the input it converts) it works on,
+ * and the resources it creates are tagged with it, so that the resources can be put back
+ * in a deterministic order (by partition then creation order) once all threads are done.
+ *
+ * The resources are created and looked up under the lock of the resource set, and the map of
+ * resources by URI (if any) is synchronized, since the threads add to it as they look up resources.
+ */
+class ConcurrentResourceSet extends ResourceSetImpl {
+
+	private static final int NO_PARTITION = Integer.MAX_VALUE;
+
+	private final ThreadLocal<Integer> partition = ThreadLocal.withInitial(() -> NO_PARTITION);
+
+	private final Map<Resource, Integer> partitions = new HashMap<>();
+
+	public ConcurrentResourceSet() {
+	}
+
+	public void setPartition(int index) {
+		partition.set(index);
+	}
+
+	public void clearPartition() {
+		partition.remove();
+	}
+
+	@Override
+	public synchronized Resource createResource(URI uri, String contentType) {
+		final Resource resource = super.createResource(uri, contentType);
+		if (resource != null) {
+			partitions.put(resource, partition.get());
+		}
+		return resource;
+	}
+
+	@Override
+	public void setURIResourceMap(Map<URI, Resource> uriResourceMap) {
+		super.setURIResourceMap(uriResourceMap != null ? Collections.synchronizedMap(uriResourceMap) : null);
+	}
+
+	@Override
+	public synchronized Resource getResource(URI uri, boolean loadOnDemand) {
+		return super.getResource(uri, loadOnDemand);
+	}
+
+	/**
+	 * Sorts the resources by partition, keeping the creation order within a partition
+	 */
+	public synchronized void sortByPartition() {
+		ECollections.sort(getResources(), Comparator.comparing(r -> partitions.getOrDefault(r, NO_PARTITION)));
+	}
+
+}
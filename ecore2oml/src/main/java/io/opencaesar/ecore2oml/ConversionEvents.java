@@ -0,0 +1,149 @@
+/**
+ * 
+ * Copyright 2022 Modelware Solutions LLC and CEA-LIST.
+ * 
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * 
+ */
+package io.opencaesar.ecore2oml;
+
+import jdk.jfr.Category;
+import jdk.jfr.DataAmount;
+import jdk.jfr.Description;
+import jdk.jfr.Enabled;
+import jdk.jfr.Event;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+import jdk.jfr.StackTrace;
+
+/**
+ * The Java Flight Recorder events of the conversion.
+ * 
+ * The events are disabled by default, and can be enabled in a recording (e.g., with the setting
+ * io.opencaesar.ecore2oml.ClassConversion#enabled=true). They are used with the pattern:
+ * <pre>
+ * Event event = new Event();
+ * event.begin();
+ * ... 
+ * if (event.shouldCommit()) {
+ *     event.field = ...;
+ *     event.commit();
+ * }
+ * </pre>
+ * so that, when disabled, their fields are not even computed.
+ */
+final class ConversionEvents {
+
+	private static final String CATEGORY = "Ecore2Oml";
+
+	private ConversionEvents() {
+	}
+
+	@Name("io.opencaesar.ecore2oml.FileLoad")
+	@Label("File Load")
+	@Description("Loading (or streaming) of an input file")
+	@Category(CATEGORY)
+	@Enabled(false)
+	@StackTrace(false)
+	static class FileLoad extends Event {
+		@Label("URI")
+		String uri;
+
+		@Label("File Size")
+		@DataAmount
+		long fileSize;
+
+		@Label("Streamed")
+		boolean streamed;
+	}
+
+	@Name("io.opencaesar.ecore2oml.PackageConversion")
+	@Label("Package Conversion")
+	@Description("Conversion of an Ecore package (including its relations and classifiers) to a vocabulary")
+	@Category(CATEGORY)
+	@Enabled(false)
+	@StackTrace(false)
+	static class PackageConversion extends Event {
+		@Label("Namespace URI")
+		String nsURI;
+
+		@Label("Name")
+		String name;
+
+		@Label("Classifiers")
+		int classifiers;
+	}
+
+	@Name("io.opencaesar.ecore2oml.ClassConversion")
+	@Label("Class Conversion")
+	@Description("Conversion of an Ecore class to an entity")
+	@Category(CATEGORY)
+	@Enabled(false)
+	@StackTrace(false)
+	static class ClassConversion extends Event {
+		@Label("Name")
+		String name;
+
+		@Label("Features")
+		int features;
+
+		@Label("Super Types")
+		int superTypes;
+	}
+
+	@Name("io.opencaesar.ecore2oml.RelationGroup")
+	@Label("Relation Group")
+	@Description("Resolution of the forward ends of a group of related relations")
+	@Category(CATEGORY)
+	@Enabled(false)
+	@StackTrace(false)
+	static class RelationGroup extends Event {
+		@Label("Relation")
+		String relation;
+
+		@Label("Size")
+		int size;
+	}
+
+	@Name("io.opencaesar.ecore2oml.DescriptionBuild")
+	@Label("Description Build")
+	@Description("Conversion of the instances of an input file to a description")
+	@Category(CATEGORY)
+	@Enabled(false)
+	@StackTrace(false)
+	static class DescriptionBuild extends Event {
+		@Label("URI")
+		String uri;
+
+		@Label("Instances")
+		long instances;
+
+		@Label("Shards")
+		int shards;
+	}
+
+	@Name("io.opencaesar.ecore2oml.ResourceSave")
+	@Label("Resource Save")
+	@Description("Saving of an output resource")
+	@Category(CATEGORY)
+	@Enabled(false)
+	@StackTrace(false)
+	static class ResourceSave extends Event {
+		@Label("URI")
+		String uri;
+
+		@Label("Bytes")
+		@DataAmount
+		long bytes;
+	}
+}
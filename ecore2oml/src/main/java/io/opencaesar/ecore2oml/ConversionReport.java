@@ -0,0 +1,254 @@
+/**
+ * 
+ * Copyright 2022 Modelware Solutions LLC and CEA-LIST.
+ * 
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * 
+ */
+package io.opencaesar.ecore2oml;
+
+import java.io.BufferedWriter;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.lang.management.ManagementFactory;
+import java.nio.charset.StandardCharsets;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.TreeMap;
+
+import org.eclipse.emf.common.util.URI;
+
+import com.sun.management.OperatingSystemMXBean;
+import com.sun.management.ThreadMXBean;
+
+/**
+ * A report of the wall time, CPU time and allocated bytes of the conversion, per phase and 
+ * per input file, with the counts of elements converted per input file, written as JSON.
+ * 
+ * A phase is measured for the whole process (since it may run on several threads), while
+ * the work on an input file is measured for the thread it runs on.
+ */
+class ConversionReport {
+
+	private static final ThreadMXBean THREADS = (ThreadMXBean) ManagementFactory.getThreadMXBean();
+	private static final OperatingSystemMXBean OS = (OperatingSystemMXBean) ManagementFactory.getOperatingSystemMXBean();
+
+	/**
+	 * The counts of the elements converted
+	 */
+	static class Counts {
+		long classes;
+		long properties;
+		long relations;
+		long instances;
+		long axioms;
+
+		void add(Counts other) {
+			classes += other.classes;
+			properties += other.properties;
+			relations += other.relations;
+			instances += other.instances;
+			axioms += other.axioms;
+		}
+	}
+
+	/**
+	 * A measurement in progress, recorded when closed
+	 */
+	class Measurement implements AutoCloseable {
+		private final Map<String, long[]> measures;
+		private final String name;
+		private final boolean process;
+		private final long wallNanos;
+		private final long cpuNanos;
+		private final long allocatedBytes;
+
+		private Measurement(Map<String, long[]> measures, String name, boolean process) {
+			this.measures = measures;
+			this.name = name;
+			this.process = process;
+			this.wallNanos = System.nanoTime();
+			this.cpuNanos = getCpuNanos(process);
+			this.allocatedBytes = getAllocatedBytes(process);
+		}
+
+		@Override
+		public void close() {
+			final long[] measure = new long[] {
+				System.nanoTime() - wallNanos,
+				getCpuNanos(process) - cpuNanos,
+				getAllocatedBytes(process) - allocatedBytes
+			};
+			synchronized (ConversionReport.this) {
+				measures.merge(name, measure, (m1, m2) -> new long[] {m1[0] + m2[0], m1[1] + m2[1], m1[2] + m2[2]});
+			}
+		}
+	}
+
+	/*
+	 * The measures and counts of an input file
+	 */
+	private static class FileEntry {
+		private final Map<String, long[]> phases = new LinkedHashMap<>();
+		private final Counts counts = new Counts();
+		private long relationBuildNanos;
+	}
+
+	private final Map<String, long[]> phases = new LinkedHashMap<>();
+	private final Map<String, FileEntry> files = new TreeMap<>();
+	private long heapBytes = -1;
+	private boolean lean;
+
+	public ConversionReport() {
+	}
+
+	/**
+	 * Starts measuring a phase of the conversion
+	 * 
+	 * @param phase the name of the phase
+	 * @return the measurement to close at the end of the phase
+	 */
+	public Measurement measurePhase(String phase) {
+		return new Measurement(phases, phase, true);
+	}
+
+	/**
+	 * Starts measuring a phase of the work on an input file on the current thread
+	 * 
+	 * @param uri the URI of the input file
+	 * @param phase the name of the phase
+	 * @return the measurement to close at the end of the phase
+	 */
+	public synchronized Measurement measureFile(URI uri, String phase) {
+		return new Measurement(getFile(uri).phases, phase, false);
+	}
+
+	/**
+	 * Adds the counts of the elements converted from an input file
+	 * 
+	 * @param uri the URI of the input file
+	 * @param counts the counts of the elements converted
+	 * @param relationBuildNanos the time spent building the relations
+	 */
+	public synchronized void addCounts(URI uri, Counts counts, long relationBuildNanos) {
+		final FileEntry file = getFile(uri);
+		file.counts.add(counts);
+		file.relationBuildNanos += relationBuildNanos;
+	}
+
+	/**
+	 * Sets the heap used after the conversion, so that runs with and without lean mode can be compared
+	 * 
+	 * @param heapBytes the bytes of heap used after a full collection
+	 * @param lean whether the conversion ran in lean mode
+	 */
+	public synchronized void setHeapAfterConversion(long heapBytes, boolean lean) {
+		this.heapBytes = heapBytes;
+		this.lean = lean;
+	}
+
+	/**
+	 * Writes the report as JSON
+	 * 
+	 * @param file the file to write
+	 * @param version the version of the application
+	 * @throws IOException when the file cannot be written
+	 */
+	public synchronized void write(File file, String version) throws IOException {
+		final File folder = file.getAbsoluteFile().getParentFile();
+		if (folder != null) {
+			folder.mkdirs();
+		}
+		try (Writer writer = new BufferedWriter(new OutputStreamWriter(new FileOutputStream(file), StandardCharsets.UTF_8))) {
+			final Counts totals = new Counts();
+			writer.write("{\n");
+			writer.write("  \"version\": "+getString(version)+",\n");
+			writer.write("  \"phases\": ");
+			writeMeasures(writer, phases, "  ");
+			if (heapBytes >= 0) {
+				writer.write(",\n  \"heapAfterConversion\": {\"usedBytes\": "+heapBytes+", \"lean\": "+lean+"}");
+			}
+			writer.write(",\n  \"files\": [");
+			final Iterator<Map.Entry<String, FileEntry>> i = files.entrySet().iterator();
+			while (i.hasNext()) {
+				final Map.Entry<String, FileEntry> entry = i.next();
+				final FileEntry f = entry.getValue();
+				writer.write("\n    {\n");
+				writer.write("      \"uri\": "+getString(entry.getKey())+",\n");
+				writer.write("      \"phases\": ");
+				writeMeasures(writer, f.phases, "      ");
+				writer.write(",\n      \"relationBuildMillis\": "+f.relationBuildNanos / 1_000_000+",\n");
+				writer.write("      \"counts\": ");
+				writeCounts(writer, f.counts);
+				writer.write("\n    }"+(i.hasNext() ? "," : "\n  "));
+				totals.add(f.counts);
+			}
+			writer.write("],\n  \"totals\": ");
+			writeCounts(writer, totals);
+			writer.write("\n}\n");
+		}
+	}
+
+	private FileEntry getFile(URI uri) {
+		return files.computeIfAbsent(uri.toString(), k -> new FileEntry());
+	}
+
+	private static void writeMeasures(Writer writer, Map<String, long[]> measures, String indent) throws IOException {
+		writer.write("{");
+		final Iterator<Map.Entry<String, long[]>> i = measures.entrySet().iterator();
+		while (i.hasNext()) {
+			final Map.Entry<String, long[]> entry = i.next();
+			final long[] measure = entry.getValue();
+			writer.write("\n"+indent+"  "+getString(entry.getKey())+": {"
+				+ "\"wallMillis\": "+measure[0] / 1_000_000+", "
+				+ "\"cpuMillis\": "+measure[1] / 1_000_000+", "
+				+ "\"allocatedBytes\": "+measure[2]+"}"
+				+ (i.hasNext() ? "," : "\n"+indent));
+		}
+		writer.write("}");
+	}
+
+	private static void writeCounts(Writer writer, Counts counts) throws IOException {
+		writer.write("{\"classes\": "+counts.classes
+			+ ", \"properties\": "+counts.properties
+			+ ", \"relations\": "+counts.relations
+			+ ", \"instances\": "+counts.instances
+			+ ", \"axioms\": "+counts.axioms+"}");
+	}
+
+	private static String getString(String value) {
+		final StringBuilder s = new StringBuilder("\"");
+		for (char c : value.toCharArray()) {
+			if (c == '"' || c == '\\') {
+				s.append('\\').append(c);
+			} else if (c < 0x20) {
+				s.append(String.format("\\u%04x", (int) c));
+			} else {
+				s.append(c);
+			}
+		}
+		return s.append('"').toString();
+	}
+
+	private static long getCpuNanos(boolean process) {
+		return process ? OS.getProcessCpuTime() : THREADS.getCurrentThreadCpuTime();
+	}
+
+	private static long getAllocatedBytes(boolean process) {
+		return process ? THREADS.getTotalThreadAllocatedBytes() : THREADS.getCurrentThreadAllocatedBytes();
+	}
+}
@@ -0,0 +1,85 @@
+/**
+ *
+ * Copyright 2022 Modelware Solutions LLC and CEA-LIST.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ */
+package io.opencaesar.ecore2oml;
+
+/**
+ * The layout of the shards of a description, shared by the in-memory and the direct conversions.
+ *
+ * Without a shard size, all the instances are in the description itself. Otherwise, the instances are
+ * in the shards _1.._n (each holding at most the shard size of them) and the description only extends
+ * the shards, so that the shards can be written as the instances are visited.
+ */
+class DescriptionShards {
+
+	private final int shardSize;
+	private int shardInstanceCount;
+	private int shardCount;
+
+	/**
+	 * Creates the layout of the shards
+	 *
+	 * @param shardSize the maximum number of instances per shard (0 for no sharding)
+	 */
+	DescriptionShards(int shardSize) {
+		this.shardSize = shardSize;
+	}
+
+	/**
+	 * Adds an instance to the current shard
+	 *
+	 * @return whether the instance starts a new shard
+	 */
+	boolean add() {
+		if (shardSize > 0 && (shardCount == 0 || shardInstanceCount == shardSize)) {
+			shardCount++;
+			shardInstanceCount = 1;
+			return true;
+		}
+		shardInstanceCount++;
+		return false;
+	}
+
+	/**
+	 * Gets the number of shards started so far
+	 *
+	 * @return the number of shards (0 when not sharded)
+	 */
+	int getShardCount() {
+		return shardCount;
+	}
+
+	/**
+	 * Gets the suffix of the description (or shard) the instances are currently added to
+	 *
+	 * @return the suffix of the current shard ("" when not sharded)
+	 */
+	String getSuffix() {
+		return getSuffix(shardCount);
+	}
+
+	/**
+	 * Gets the suffix of a given shard
+	 *
+	 * @param shard the index of the shard (0 for the description itself)
+	 * @return the suffix of the shard
+	 */
+	static String getSuffix(int shard) {
+		return (shard == 0) ? "" : "_"+shard;
+	}
+
+}
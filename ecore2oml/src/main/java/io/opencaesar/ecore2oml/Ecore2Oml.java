@@ -18,13 +18,24 @@
 package io.opencaesar.ecore2oml;
 
 import java.io.File;
+import java.io.IOException;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
 import java.util.Arrays;
+import java.util.Collection;
 import java.util.Collections;
+import java.util.Deque;
 import java.util.HashMap;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
 import java.util.List;
 import java.util.Map;
+import java.util.Set;
 import java.util.stream.Collectors;
 
+import org.apache.log4j.LogManager;
+import org.apache.log4j.Logger;
 import org.eclipse.emf.common.util.URI;
 import org.eclipse.emf.ecore.EAttribute;
 import org.eclipse.emf.ecore.EClass;
@@ -38,17 +49,29 @@ import org.eclipse.emf.ecore.EPackage;
 import org.eclipse.emf.ecore.EReference;
 import org.eclipse.emf.ecore.EStructuralFeature;
 import org.eclipse.emf.ecore.EcorePackage;
+import org.eclipse.emf.ecore.InternalEObject;
 import org.eclipse.emf.ecore.resource.Resource;
+import org.eclipse.emf.ecore.resource.impl.ResourceImpl;
 import org.eclipse.emf.ecore.util.EcoreSwitch;
+import org.eclipse.emf.ecore.util.EcoreUtil;
+import org.eclipse.emf.ecore.xmi.XMLResource;
+import org.eclipse.emf.ecore.xmi.impl.XMIResourceImpl;
+import org.eclipse.emf.ecore.xmi.impl.XMLResourceImpl;
 
 import io.opencaesar.ecore2oml.Ecore2OmlApp.Options;
+import io.opencaesar.ecore2oml.EcoreUtilities.AbstractnessCache;
 import io.opencaesar.ecore2oml.EcoreUtilities.ERelationBuilder;
 import io.opencaesar.ecore2oml.EcoreUtilities.ERelationBuilder.ERelation;
+import io.opencaesar.ecore2oml.EcoreUtilities.SuperFeatureIndex;
+import io.opencaesar.oml.Aspect;
+import io.opencaesar.oml.Axiom;
 import io.opencaesar.oml.CardinalityRestrictionKind;
+import io.opencaesar.oml.Concept;
 import io.opencaesar.oml.ConceptInstance;
 import io.opencaesar.oml.Description;
 import io.opencaesar.oml.Element;
 import io.opencaesar.oml.Entity;
+import io.opencaesar.oml.ImportKind;
 import io.opencaesar.oml.Literal;
 import io.opencaesar.oml.Member;
 import io.opencaesar.oml.Ontology;
@@ -56,6 +79,7 @@ import io.opencaesar.oml.Property;
 import io.opencaesar.oml.Relation;
 import io.opencaesar.oml.ReverseRelation;
 import io.opencaesar.oml.Scalar;
+import io.opencaesar.oml.ScalarProperty;
 import io.opencaesar.oml.UnreifiedRelation;
 import io.opencaesar.oml.Vocabulary;
 import io.opencaesar.oml.util.OmlBuilder;
@@ -66,32 +90,141 @@ class Ecore2Oml extends EcoreSwitch<EObject> {
 	private static final String RDF_NS = "http://www.w3.org/1999/02/22-rdf-syntax-ns#";
 	private static final String RDFS_NS = "http://www.w3.org/2000/01/rdf-schema#";
 	
+	private static final Logger LOGGER = LogManager.getLogger(Ecore2Oml.class);
+
+	// the resource classes whose URI fragments are known to be IDs or containment paths
+	private static final Set<Class<?>> PATH_FRAGMENT_RESOURCES = Set.of(ResourceImpl.class, XMLResourceImpl.class, XMIResourceImpl.class);
+
 	private final Resource inputResource;
 	private final OmlBuilder oml;
 	private final Options options;
+	private final IriCache iriCache;
+	private final AbstractnessCache abstractnessCache;
 
 	private final Map<Object, Element> ecore2Oml;
 	private final ERelationBuilder eRelationBuilder;
+	private final DescriptionShards shards;
+	private SuperFeatureIndex superFeatureIndex;
 	
+	// the contents of the instances left to convert, one frame per containment level
+	private Deque<ContentsFrame> pendingContents;
+	private EObject pendingObject;
+	private String pendingPath;
+	// the containment features whose values are all converted, released at the end of a chunk of instances
+	private final List<Released> releasable = new ArrayList<>();
+	private long instanceCount;
+	private long relationBuildNanos;
 	
-	public Ecore2Oml(Resource inputResource, OmlBuilder oml, Options options) {
+	
+	public Ecore2Oml(Resource inputResource, OmlBuilder oml, Options options, IriCache iriCache, AbstractnessCache abstractnessCache) {
 		this.inputResource = inputResource;
 		this.oml = oml;
 		this.options = options;
+		this.iriCache = iriCache;
+		this.abstractnessCache = abstractnessCache;
 		
 		this.ecore2Oml = new HashMap<>();
 		this.eRelationBuilder = new ERelationBuilder();
+		this.shards = new DescriptionShards(options.descriptionShardSize);
 	}
 
 	public void run() {
+		final ConversionEvents.DescriptionBuild event = new ConversionEvents.DescriptionBuild();
+		event.begin();
+		
 		// iterate over the model contents to convert it
 		for (EObject root : inputResource.getContents()) {
 			doSwitch(root);
 		}
+		commit(event);
+	}
+
+	public void run(XmiInstanceReader reader) throws IOException {
+		final ConversionEvents.DescriptionBuild event = new ConversionEvents.DescriptionBuild();
+		event.begin();
+		
+		// convert the instances as they are read without loading the model
+		reader.read((name, type) -> createConceptInstance(name, type));
+		commit(event);
+	}
+
+	/**
+	 * Writes the instances directly to the description (or its shards) as they are read
+	 * 
+	 * @param reader the reader of the instances
+	 * @return whether the description was written, or false (with nothing written) when some instance
+	 * cannot be written directly, in which case the instances need to be converted with {@link #run(XmiInstanceReader)}
+	 * @throws IOException when the instances cannot be read or written
+	 */
+	public boolean runDirect(XmiInstanceReader reader) throws IOException {
+		final ConversionEvents.DescriptionBuild event = new ConversionEvents.DescriptionBuild();
+		event.begin();
+		
+		// write the instances as they are read without building the description
+		final DescriptionWriterHandler handler = new DescriptionWriterHandler();
+		try {
+			reader.read(handler);
+			handler.close();
+		} catch (UnwritableInstanceException e) {
+			LOGGER.info("Cannot write "+inputResource.getURI()+" directly: "+e.getMessage());
+			handler.delete();
+			return false;
+		} catch (IOException | RuntimeException e) {
+			handler.delete();
+			throw e;
+		}
+		commit(event);
+		return true;
+	}
+
+	private void commit(ConversionEvents.DescriptionBuild event) {
+		// only the conversions that built a description are recorded
+		if (instanceCount > 0 && event.shouldCommit()) {
+			event.uri = inputResource.getURI().toString();
+			event.instances = instanceCount;
+			event.shards = shards.getShardCount();
+			event.commit();
+		}
 	}
 	
+	/**
+	 * Gets the counts of the elements converted so far
+	 * 
+	 * @return the counts
+	 */
+	public ConversionReport.Counts getCounts() {
+		final ConversionReport.Counts counts = new ConversionReport.Counts();
+		counts.instances = instanceCount;
+		counts.axioms = instanceCount; // the type assertions
+		for (Element element : ecore2Oml.values()) {
+			if (element instanceof Vocabulary) {
+				final Iterator<EObject> i = element.eAllContents();
+				while (i.hasNext()) {
+					final EObject o = i.next();
+					if (o instanceof Aspect || o instanceof Concept) {
+						counts.classes++;
+					} else if (o instanceof ScalarProperty) {
+						counts.properties++;
+					} else if (o instanceof UnreifiedRelation) {
+						counts.relations++;
+					} else if (o instanceof Axiom) {
+						counts.axioms++;
+					}
+				}
+			}
+		}
+		return counts;
+	}
+
+	public long getRelationBuildNanos() {
+		return relationBuildNanos;
+	}
+
 	@Override
 	public EObject caseEPackage(EPackage object) {
+		final ConversionEvents.PackageConversion event = new ConversionEvents.PackageConversion();
+		event.begin();
+		
 		final String namespace = getNamespace(object);
 		final String pefix = getPrefix(object);
 		final URI uri = getUri(namespace);
@@ -102,7 +235,9 @@ class Ecore2Oml extends EcoreSwitch<EObject> {
 
 		// if the root package, build eRelations
 		if (object.getESuperPackage() == null) {
-			eRelationBuilder.build(inputResource);
+			final long start = System.nanoTime();
+			eRelationBuilder.build(inputResource, getSuperFeatureIndex());
+			relationBuildNanos += System.nanoTime() - start;
 		}
 		
 		// add annotations
@@ -114,6 +249,12 @@ class Ecore2Oml extends EcoreSwitch<EObject> {
 		// iterate over classifiers
 		object.getEClassifiers().stream().forEach(c -> doSwitch(c));
 		
+		if (event.shouldCommit()) {
+			event.nsURI = object.getNsURI();
+			event.name = object.getName();
+			event.classifiers = object.getEClassifiers().size();
+			event.commit();
+		}
 		return vocabulary;
 	}
 
@@ -124,12 +265,15 @@ class Ecore2Oml extends EcoreSwitch<EObject> {
 			return null;
 		}
 
+		final ConversionEvents.ClassConversion event = new ConversionEvents.ClassConversion();
+		event.begin();
+
 		// get the vocabulary
 		final Vocabulary vocabulary = (Vocabulary) ecore2Oml.get(object.getEPackage()); 
 
 		// create the entity
 		final Entity entity;
-		if (EcoreUtilities.isAbstract(object)) {
+		if (abstractnessCache.isAbstract(object)) {
 			entity = oml.addAspect(vocabulary, object.getName());
 		} else {
 			entity = oml.addConcept(vocabulary, object.getName());
@@ -147,6 +291,12 @@ class Ecore2Oml extends EcoreSwitch<EObject> {
 		// add properties
 		object.getEStructuralFeatures().stream().forEach(f -> doSwitch(f));
 		
+		if (event.shouldCommit()) {
+			event.name = object.getName();
+			event.features = object.getEStructuralFeatures().size();
+			event.superTypes = object.getESuperTypes().size();
+			event.commit();
+		}
 		return entity;
 	}
 
@@ -242,7 +392,7 @@ class Ecore2Oml extends EcoreSwitch<EObject> {
 		}
 
 		// add specializations
-		EcoreUtilities.getSuperEAttributes(object).forEach( sup -> oml.addSpecializationAxiom(vocabulary, property.getIri(), getIri(sup)));
+		getSuperFeatureIndex().getSuperEAttributes(object).forEach( sup -> oml.addSpecializationAxiom(vocabulary, property.getIri(), getIri(sup)));
 		
 		// add restrictions
 		if (object.getLowerBound() > 0 || object.getUpperBound() > 1) {
@@ -388,41 +538,180 @@ class Ecore2Oml extends EcoreSwitch<EObject> {
 	}
 
 	protected ConceptInstance createConceptInstance(EObject object) {
-		// get the description (assumption is that there is a single one)
+		// get the description (or shard of it) to add the instance to
 		Description description = (Description) getDescription();
 		
+		// get the containment path of the object (from that of its container) when possible
+		final String path;
+		if (pendingContents == null) {
+			path = getRootPath(object);
+		} else {
+			path = (object == pendingObject) ? pendingPath : null;
+		}
+		final String fragment = getName(object, path);
+		
 		// create concept instance
-		ConceptInstance instance = oml.addConceptInstance(description, getName(object));
-		ecore2Oml.put(object, instance);
+		ConceptInstance instance = oml.addConceptInstance(description, OmlDescriptionWriter.toId(fragment));
 		
 		// add annotations
-		addMemberAnnotations(description, instance, object);
+		addMemberAnnotations(description, instance, fragment);
 		
 		// add type
 		oml.addTypeAssertion(description, instance.getIri(), getIri(object.eClass()));
+		reportInstanceProgress();
+		
+		// add nested contents (iteratively, since the containment can be very deep)
+		if (pendingContents != null) {
+			pendingContents.push(new ContentsFrame(object, path));
+		} else {
+			pendingContents = new ArrayDeque<>();
+			pendingContents.push(new ContentsFrame(object, path));
+			try {
+				while (!pendingContents.isEmpty()) {
+					final ContentsFrame frame = pendingContents.peek();
+					if (frame.contents.hasNext()) {
+						pendingObject = frame.contents.next();
+						final EStructuralFeature previous = frame.feature;
+						final boolean previousInOtherResource = frame.inOtherResource;
+						pendingPath = frame.getPath(pendingObject);
+						if (previous != null && previous != frame.feature && !previousInOtherResource) {
+							addReleasable(frame.object, previous);
+						}
+						doSwitch(pendingObject);
+					} else {
+						pendingContents.pop();
+						if (frame.feature != null && !frame.inOtherResource) {
+							addReleasable(frame.object, frame.feature);
+						}
+					}
+				}
+			} finally {
+				releasable.clear();
+				pendingContents = null;
+				pendingObject = null;
+				pendingPath = null;
+			}
+		}
 		
-		// add nested contents
-		object.eContents().forEach(i -> doSwitch(i));
+		return instance;
+	}
+
+	protected ConceptInstance createConceptInstance(String name, EClass type) {
+		// get the description (or shard of it) to add the instance to
+		Description description = (Description) getDescription();
+		
+		// create concept instance
+		ConceptInstance instance = oml.addConceptInstance(description, OmlDescriptionWriter.toId(name));
+		
+		// add annotations
+		addMemberAnnotations(description, instance, name);
+		
+		// add type
+		oml.addTypeAssertion(description, instance.getIri(), getIri(type));
+		reportInstanceProgress();
 		
 		return instance;
 	}
+
+	private void reportInstanceProgress() {
+		instanceCount++;
+		if (instanceCount % options.progressInterval == 0) {
+			LOGGER.info("Converted "+instanceCount+" instances of "+inputResource.getURI());
+		}
+		if (options.instanceChunkSize > 0 && instanceCount % options.instanceChunkSize == 0) {
+			releaseConvertedContents();
+		}
+	}
+
+	/*
+	 * Adds a containment feature of an object being converted once all of its values are converted
+	 * (i.e., the traversal is past them), unless the feature cannot simply be unset
+	 */
+	private void addReleasable(EObject object, EStructuralFeature feature) {
+		if (options.instanceChunkSize > 0 && feature.isChangeable() && !feature.isDerived() && object.eClass().getEAllContainments().contains(feature)) {
+			releasable.add(new Released(object, feature));
+		}
+	}
+
+	/*
+	 * Detaches the converted containment subtrees from the objects still being converted, and removes
+	 * their objects from the ID maps of the resource, so that the subtrees can be garbage collected 
+	 * (only their type assertions are needed once converted)
+	 */
+	private void releaseConvertedContents() {
+		final Map<EObject, String> ids = (inputResource instanceof XMLResource) ? ((XMLResource)inputResource).getEObjectToIDMap() : Collections.emptyMap();
+		final Map<String, EObject> intrinsicIds = (inputResource instanceof ResourceImpl) ? ((ResourceImpl)inputResource).getIntrinsicIDToEObjectMap() : null;
+		final boolean hasIds = !ids.isEmpty() || (intrinsicIds != null && !intrinsicIds.isEmpty());
+		for (Released r : releasable) {
+			if (hasIds) {
+				final Object value = r.object.eGet(r.feature, false);
+				final Collection<?> values = r.feature.isMany() ? (Collection<?>) value : (value != null) ? Collections.singleton(value) : Collections.emptySet();
+				final Iterator<EObject> i = EcoreUtil.getAllProperContents(values, false);
+				while (i.hasNext()) {
+					final EObject o = i.next();
+					if (ids.containsKey(o)) {
+						((XMLResource)inputResource).setID(o, null);
+					}
+					if (intrinsicIds != null) {
+						final String id = EcoreUtil.getID(o);
+						if (id != null && intrinsicIds.get(id) == o) {
+							intrinsicIds.remove(id);
+						}
+					}
+				}
+			}
+			r.object.eUnset(r.feature);
+		}
+		releasable.clear();
+	}
 	
 	protected Description getDescription() {
 		var description = (Description) ecore2Oml.get("description");
 		if (description == null) {
-			final var inputUri = inputResource.getURI();
-			final var relativePath = inputUri.authority()+inputUri.path()+"."+options.outputFileExtension;
-			final var uri = URI.createFileURI(options.outputFolderPath+File.separator+relativePath);
-			
-			final var iri = "http://" + relativePath;
-			final var namespace = iri+"#";
-			final var pefix = URI.createURI(iri).lastSegment();
-				
-			// create description
-			description = oml.createDescription(uri, namespace, pefix);
+			description = createDescription("");
 			ecore2Oml.put("description", description);
+			ecore2Oml.put("descriptionShard", description);
+		}
+		
+		// start a new shard, extended by the description, when the current one is full
+		var shard = (Description) ecore2Oml.get("descriptionShard");
+		if (shards.add()) {
+			shard = createDescription(shards.getSuffix());
+			oml.addImport(description, ImportKind.EXTENSION, shard.getNamespace(), shard.getPrefix());
+			ecore2Oml.put("descriptionShard", shard);
 		}
-		return description;
+		return shard;
+	}
+
+	private Description createDescription(String suffix) {
+		final var uri = getDescriptionUri(suffix);
+		final var iri = getDescriptionIri(suffix);
+		final var namespace = iri+"#";
+		final var pefix = URI.createURI(iri).lastSegment();
+			
+		// create description
+		return oml.createDescription(uri, namespace, pefix);
+	}
+
+	private SuperFeatureIndex getSuperFeatureIndex() {
+		// built on first use since attributes can be converted before (or without) a root package
+		if (superFeatureIndex == null) {
+			superFeatureIndex = new SuperFeatureIndex(inputResource);
+		}
+		return superFeatureIndex;
+	}
+
+	private String getDescriptionRelativePath(String suffix) {
+		final var inputUri = inputResource.getURI();
+		return inputUri.authority()+inputUri.path()+suffix+"."+options.outputFileExtension;
+	}
+
+	private URI getDescriptionUri(String suffix) {
+		return URI.createFileURI(options.outputFolderPath+File.separator+getDescriptionRelativePath(suffix));
+	}
+
+	private String getDescriptionIri(String suffix) {
+		return "http://" + getDescriptionRelativePath(suffix);
 	}
 
 	protected Vocabulary getMinimalEcoreVocabulary( ) {
@@ -466,9 +755,8 @@ class Ecore2Oml extends EcoreSwitch<EObject> {
 		}
 	}
 
-	protected void addMemberAnnotations(Ontology ontology, Member member, EObject object) {
+	protected void addMemberAnnotations(Ontology ontology, Member member, String name) {
 		// add rdfs:label
-		var name = object.eResource().getURIFragment(object);
 		var literal = oml.createQuotedLiteral(ontology, name, null, null);
 		oml.addAnnotation(ontology, member.getIri(), RDFS_NS+"label", literal);
 	}
@@ -477,16 +765,32 @@ class Ecore2Oml extends EcoreSwitch<EObject> {
 	// Utilities
 	// ---------
 
-	private String getName(EObject object) {
+	private String getName(EObject object, String path) {
+		// same as the URI fragment: the ID of the object if any, otherwise its containment path
+		if (path != null) {
+			String id = (inputResource instanceof XMLResource) ? ((XMLResource)inputResource).getID(object) : null;
+			if (id == null) {
+				id = EcoreUtil.getID(object);
+			}
+			return (id != null) ? id : path;
+		}
 		return object.eResource().getURIFragment(object);
 	}
+
+	private String getRootPath(EObject object) {
+		if (PATH_FRAGMENT_RESOURCES.contains(inputResource.getClass()) && ((InternalEObject)object).eDirectResource() == inputResource) {
+			final List<EObject> roots = inputResource.getContents();
+			return "/" + ((roots.size() > 1) ? String.valueOf(roots.indexOf(object)) : "");
+		}
+		return null;
+	}
 	
 	private String getName(EStructuralFeature object) {
-		return object.getEContainingClass().getName() + "_" + object.getName();
+		return iriCache.getName(object, o -> o.getEContainingClass().getName() + "_" + o.getName());
 	}
 
 	private String getIri(EStructuralFeature object) {
-		return getNamespace(object.getEContainingClass().getEPackage()) + getName(object);
+		return iriCache.getIri(object, o -> getNamespace(o.getEContainingClass().getEPackage()) + getName(o));
 	}
 	
 	public String getBaseIri(EDataType object) {
@@ -505,16 +809,20 @@ class Ecore2Oml extends EcoreSwitch<EObject> {
 	}
 
 	private String getIri(EClassifier object) {
-		var iri = getNamespace(object.getEPackage())+object.getName();
-		return getMappedIri(iri);
+		return iriCache.getIri(object, o -> {
+			var iri = getNamespace(o.getEPackage())+o.getName();
+			return getMappedIri(iri);
+		});
 	}
 	
 	private String getNamespace(EPackage object) {
-		String iri = object.getNsURI();
-		if (!iri.endsWith("#") && !iri.endsWith("/")) {
-			iri = iri+"#";
-		}
-		return getMappedIri(iri);
+		return iriCache.getNamespace(object, o -> {
+			String iri = o.getNsURI();
+			if (!iri.endsWith("#") && !iri.endsWith("/")) {
+				iri = iri+"#";
+			}
+			return getMappedIri(iri);
+		});
 	}
 
 	private String getPrefix(EPackage object) {
@@ -528,12 +836,163 @@ class Ecore2Oml extends EcoreSwitch<EObject> {
 	}
 
 	private String getMappedIri(String iri) {
-		for( var e : options.namespaceMap2.entrySet()) {
-			if (iri.startsWith(e.getKey())) {
-				return e.getValue() + iri.substring(e.getKey().length());
+		return options.namespaceMapper.map(iri);
+	}
+
+	/*
+	 * A handler of the instances read that writes them directly to the description (or its shards) in OML
+	 * textual syntax, in the same layout as the in-memory conversion.
+	 */
+	private class DescriptionWriterHandler implements XmiInstanceReader.InstanceHandler {
+		private final Map<String, String> usages = new LinkedHashMap<>();
+		private final Map<String, String> extensions = new LinkedHashMap<>();
+		private final List<File> files = new ArrayList<>();
+		private OmlDescriptionWriter writer;
+
+		@Override
+		public void start(Collection<EPackage> packages) {
+			addUsage(RDFS_NS, "rdfs");
+			for (EPackage ePackage : getInstantiablePackages(packages)) {
+				addUsage(getNamespace(ePackage), getPrefix(ePackage));
+			}
+		}
+
+		@Override
+		public void instance(String name, EClass type) throws IOException {
+			if (shards.add() || writer == null) {
+				if (writer != null) {
+					writer.close();
+				}
+				final var suffix = shards.getSuffix();
+				writer = openWriter(suffix, Collections.emptyMap());
+				if (shards.getShardCount() > 0) {
+					extensions.put(getDescriptionIri(suffix)+"#", URI.createURI(getDescriptionIri(suffix)).lastSegment());
+				}
+			}
+			final String id = OmlDescriptionWriter.toId(name);
+			final String typeIri = getIri(type);
+			if (!writer.canWrite(id, typeIri)) {
+				throw new UnwritableInstanceException("instance '"+id+"' of type <"+typeIri+">");
+			}
+			writer.writeConceptInstance(id, typeIri, RDFS_NS+"label", name);
+			reportInstanceProgress();
+		}
+
+		private void close() throws IOException {
+			if (writer != null) {
+				writer.close();
+				writer = null;
+			}
+			if (shards.getShardCount() > 0) {
+				openWriter("", extensions).close();
+			}
+		}
+
+		private void delete() throws IOException {
+			try {
+				if (writer != null) {
+					writer.close();
+					writer = null;
+				}
+			} finally {
+				files.forEach(File::delete);
+			}
+		}
+
+		private OmlDescriptionWriter openWriter(String suffix, Map<String, String> extensions) throws IOException {
+			final var iri = getDescriptionIri(suffix);
+			final var pefix = URI.createURI(iri).lastSegment();
+			final var uri = getDescriptionUri(suffix);
+			LOGGER.info("Writing: "+uri);
+			final var file = new File(uri.toFileString());
+			files.add(file);
+			return new OmlDescriptionWriter(file, iri+"#", pefix, extensions, usages);
+		}
+
+		private void addUsage(String namespace, String prefix) {
+			if (!usages.containsKey(namespace)) {
+				String uniquePrefix = prefix;
+				for (int i = 1; usages.containsValue(uniquePrefix); i++) {
+					uniquePrefix = prefix + i;
+				}
+				usages.put(namespace, uniquePrefix);
+			}
+		}
+
+		/*
+		 * The packages of the types the instances can have: the declared ones (needed for explicit types) 
+		 * and those of the types of the containment references of their classes (the implicit types).
+		 */
+		private Collection<EPackage> getInstantiablePackages(Collection<EPackage> packages) {
+			final Set<EPackage> visited = new LinkedHashSet<>(packages);
+			final Deque<EPackage> pending = new ArrayDeque<>(packages);
+			while (!pending.isEmpty()) {
+				for (EClassifier classifier : pending.pop().getEClassifiers()) {
+					if (classifier instanceof EClass) {
+						for (EReference containment : ((EClass)classifier).getEAllContainments()) {
+							final EPackage ePackage = containment.getEReferenceType().getEPackage();
+							if (ePackage != null && visited.add(ePackage)) {
+								pending.push(ePackage);
+							}
+						}
+					}
+				}
+			}
+			return visited;
+		}
+	}
+
+	/*
+	 * Thrown when an instance read cannot be written directly in OML textual syntax
+	 */
+	@SuppressWarnings("serial")
+	private static class UnwritableInstanceException extends RuntimeException {
+		private UnwritableInstanceException(String message) {
+			super(message);
+		}
+	}
+
+	/*
+	 * A containment feature of an instance whose values are converted
+	 */
+	private record Released(EObject object, EStructuralFeature feature) {}
+
+	/*
+	 * The contents of an instance left to convert, with the running index of the current containment 
+	 * feature, from which the containment paths of the contents are derived in the same way as EMF does.
+	 */
+	private static class ContentsFrame {
+		private final EObject object;
+		private final Iterator<EObject> contents;
+		private final String path;
+		private EStructuralFeature feature;
+		private int index;
+		private boolean inOtherResource; // whether some value of the feature is stored in another resource
+		private ContentsFrame(EObject object, String path) {
+			this.object = object;
+			this.contents = object.eContents().iterator();
+			this.path = path;
+		}
+		private String getPath(EObject content) {
+			final EStructuralFeature f = content.eContainingFeature();
+			if (f != feature) {
+				feature = f;
+				index = 0;
+				inOtherResource = false;
+			} else {
+				index++;
+			}
+			if (((InternalEObject)content).eDirectResource() != null) {
+				inOtherResource = true;
+			}
+			if (path == null || f != content.eContainmentFeature() || ((InternalEObject)content).eDirectResource() != null) {
+				return null; // in a feature map or in another resource
+			}
+			if (f instanceof EReference && !((EReference)f).getEKeys().isEmpty()) {
+				return null; // a keyed segment
 			}
+			return path + "/@" + f.getName() + (f.isMany() ? "." + index : "");
 		}
-		return iri;
 	}
 
 }
\ No newline at end of file
@@ -16,15 +16,33 @@
  * 
  */package io.opencaesar.ecore2oml;
 
+import java.io.BufferedOutputStream;
 import java.io.File;
+import java.io.FileOutputStream;
+import java.io.FilterOutputStream;
 import java.io.IOException;
+import java.io.OutputStream;
+import java.lang.management.ManagementFactory;
+import java.lang.management.MemoryPoolMXBean;
+import java.lang.management.MemoryType;
+import java.util.ArrayDeque;
 import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.Collection;
 import java.util.Collections;
+import java.util.Deque;
 import java.util.HashMap;
+import java.util.HashSet;
 import java.util.List;
 import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.ForkJoinTask;
+import java.util.concurrent.Future;
+import java.util.stream.Collectors;
 
 import org.apache.log4j.Appender;
 import org.apache.log4j.AppenderSkeleton;
@@ -37,10 +55,13 @@ import org.eclipse.emf.ecore.EObject;
 import org.eclipse.emf.ecore.EPackage;
 import org.eclipse.emf.ecore.resource.Resource;
 import org.eclipse.emf.ecore.resource.ResourceSet;
+import org.eclipse.emf.ecore.resource.impl.ResourceImpl;
 import org.eclipse.emf.ecore.resource.impl.ResourceSetImpl;
 import org.eclipse.emf.ecore.util.ECrossReferenceAdapter;
+import org.eclipse.emf.ecore.util.EcoreUtil;
 import org.eclipse.emf.ecore.xcore.XcoreStandaloneSetup;
 import org.eclipse.emf.ecore.xmi.impl.XMLResourceFactoryImpl;
+import org.eclipse.xtext.resource.XtextResource;
 import org.eclipse.xtext.resource.XtextResourceSet;
 
 import com.beust.jcommander.IParameterValidator;
@@ -49,6 +70,7 @@ import com.beust.jcommander.Parameter;
 import com.beust.jcommander.ParameterException;
 import com.google.inject.Injector;
 
+import io.opencaesar.ecore2oml.EcoreUtilities.AbstractnessCache;
 import io.opencaesar.oml.dsl.OmlStandaloneSetup;
 import io.opencaesar.oml.resource.OmlJsonResourceFactory;
 import io.opencaesar.oml.resource.OmlXMIResourceFactory;
@@ -62,6 +84,7 @@ public class Ecore2OmlApp {
 
 	private static final String ECORE = "ecore";
 	private static final String XCORE = "xcore";
+	private static final int SAVE_BUFFER_SIZE = 1 << 20;
 	
 	static class Options {
 		@Parameter(
@@ -91,9 +114,22 @@ public class Ecore2OmlApp {
 			required=false)
 		public List<String> inputFileExtensions = Arrays.asList(ECORE, XCORE);
 	
+		@Parameter(
+			names= {"--include","-in"}, 
+			description="Glob of input files to include, relative to the input folder or matching the file name when it has no '/' (Optional, all files by default)",
+			required=false)
+		public List<String> includes = new ArrayList<>();
+	
+		@Parameter(
+			names= {"--exclude","-ex"}, 
+			description="Glob of input files or folders to exclude, relative to the input folder or matching the file name when it has no '/' (Optional, e.g., target or **/bin)",
+			required=false)
+		public List<String> excludes = new ArrayList<>();
+	
 		@Parameter(
 			names= {"--output-file-extension","-oe"}, 
-			description="Extension of output file (Optional, oml by default)",
+			description="Extension of output file (Optional, oml by default, other options omlxmi and omljson)",
+			validateWith= OutputFileExtension.class,
 			required=false)
 		public String outputFileExtension = OmlConstants.OML_EXTENSION;
 	
@@ -118,6 +154,106 @@ public class Ecore2OmlApp {
 		 */
 		public Map<String, String> namespaceMap2 = new HashMap<>();
 
+		/*
+		 * A compiled mapper of namespaceMap2
+		 */
+		public NamespaceMapper namespaceMapper;
+
+		/*
+		 * Fills namespaceMap2 from namespaceMap and compiles it into namespaceMapper
+		 */
+		void mapNamespaces() {
+			namespaceMap.forEach(entry -> {
+				var parts = entry.split("=");
+				var oldNs = parts[0].trim();
+				var newNs = parts[1].trim();
+				namespaceMap2.put(oldNs, newNs);
+			});
+			namespaceMapper = new NamespaceMapper(namespaceMap2);
+		}
+
+		@Parameter(
+			names= {"--threads", "-t"}, 
+			description="Number of threads used to discover and load (and optionally convert) the input files and to save the omlxmi or omljson output files; oml output files are always saved one at a time (Optional, 1 by default)",
+			validateWith= PositiveInteger.class,
+			required=false)
+		public int threads = 1;
+
+		@Parameter(
+			names= {"--parallel-conversion", "-pc"}, 
+			description="Converts the input files concurrently using the number of threads (Optional)",
+			required=false)
+		public boolean parallelConversion;
+
+		@Parameter(
+			names= {"--stream-instances", "-si"}, 
+			description="Streams the input instance (non Ecore/Xcore) files when converting them instead of loading them (Optional)",
+			required=false)
+		public boolean streamInstances;
+
+		@Parameter(
+			names= {"--progress-interval", "-pi"}, 
+			description="Number of instances converted between progress reports (Optional, 10000 by default)",
+			validateWith= PositiveInteger.class,
+			required=false)
+		public int progressInterval = 10000;
+
+		@Parameter(
+			names= {"--instance-chunk-size", "-ic"}, 
+			description="Number of instances of a loaded input file converted between releases of the containment subtrees converted so far, which caps the objects kept alive by the conversion (Optional, no release by default)",
+			validateWith= PositiveInteger.class,
+			required=false)
+		public int instanceChunkSize = 0;
+
+		@Parameter(
+			names= {"--description-shard-size", "-ds"}, 
+			description="Maximum number of instances per shard of an output description, which then only extends its shards (Optional, no sharding by default)",
+			validateWith= PositiveInteger.class,
+			required=false)
+		public int descriptionShardSize = 0;
+
+		@Parameter(
+			names= {"--direct-description-output", "-dd"}, 
+			description="Writes the streamed instance files directly as OML text descriptions without building them in memory, unless some instance cannot be written that way, i.e., when the package of its type is not declared on the root element (Optional, requires -si and oml output)",
+			required=false)
+		public boolean directDescriptionOutput;
+
+		@Parameter(
+			names= {"--lean", "-ln"}, 
+			description="Builds the output without a cross reference adapter, resolving references through a URI to resource index instead, to save memory (Optional)",
+			required=false)
+		public boolean lean;
+
+		@Parameter(
+			names= {"--fast-load", "-fl"}, 
+			description="Loads the input files with a tuned profile (pooled parsers, deferred IDREF resolution, intrinsic ID maps and large read buffers) (Optional)",
+			required=false)
+		public boolean fastLoad;
+
+		@Parameter(
+			names= {"--cache-folder", "-cf"}, 
+			description="Location of a folder caching the loaded Ecore and XMI input files in binary form, reused while their content is unchanged and evicted after 30 days unused (Optional)",
+			required=false)
+		public String cacheFolderPath;
+
+		@Parameter(
+			names= {"--lazy-referenced-ecores", "-lr"}, 
+			description="Registers the packages of the referenced Ecore files by scanning their nsURIs, and loads a file only when one of its packages is needed (Optional)",
+			required=false)
+		public boolean lazyReferencedEcores;
+
+		@Parameter(
+			names= {"--report", "-rp"}, 
+			description="Location of a JSON report of the time, CPU, allocated bytes and element counts per phase and input file, and of the heap used after conversion (Optional)",
+			required=false)
+		public String reportPath;
+
+		@Parameter(
+			names= {"--release-inputs", "-ri"}, 
+			description="Bounds the memory by loading each input file when converted and unloading it once no remaining conversion needs it, converting sequentially (Optional)",
+			required=false)
+		public boolean releaseInputs;
+
 		@Parameter(
 			names= {"--debug", "-d"}, 
 			description="Shows debug logging statements")
@@ -132,6 +268,12 @@ public class Ecore2OmlApp {
 	
 	private final Options options = new Options();
 	
+	private final ConversionReport report = new ConversionReport();
+
+	private InputResourceCache inputResourceCache;
+
+	private ReferencedEcoreRegistry referencedEcoreRegistry;
+	
 	private Logger LOGGER = LogManager.getLogger(Ecore2OmlApp.class);
 
     /**
@@ -154,12 +296,7 @@ public class Ecore2OmlApp {
 		if (app.options.inputFolderPath.endsWith(File.separator)) {
 			app.options.inputFolderPath = app.options.inputFolderPath.substring(0, app.options.inputFolderPath.length()-1);
 		}
-		app.options.namespaceMap.forEach(entry -> {
-			var parts = entry.split("=");
-			var oldNs = parts[0].trim();
-			var newNs = parts[1].trim();
-			app.options.namespaceMap2.put(oldNs, newNs);
-		});
+		app.options.mapNamespaces();
 		app.run();
 	}
 
@@ -180,73 +317,200 @@ public class Ecore2OmlApp {
 		LOGGER.info("Input Folder Path= " + options.inputFolderPath);
 		LOGGER.info("Output Folder Path= " + options.outputFolderPath);
 		
+		if (options.cacheFolderPath != null) {
+			inputResourceCache = new InputResourceCache(new File(options.cacheFolderPath), getAppVersion());
+		}
+		
 		final File inputFolder = new File(options.inputFolderPath);
-		final Collection<File> inputFiles = collectInputFiles(inputFolder, options.inputFileExtensions);
+		final Collection<File> inputFiles = new InputFileScanner(inputFolder, options.inputFileExtensions, options.includes, options.excludes).scan(options.threads);
 		
-		final ResourceSet inputResourceSet = createInputResourceSet();
+		final Injector injector;
+		final ResourceSet inputResourceSet;
+		try (var phase = report.measurePhase("setup")) {
+			injector = new XcoreStandaloneSetup().createInjectorAndDoEMFRegistration();
+			inputResourceSet = createInputResourceSet(injector);
+		}
 		
-		// load the input models and resolve their references
+		// load the input models and resolve their references (streamed instance models are read later)
 		List<URI> inputResourceURIs = new ArrayList<>();
+		List<URI> loadedResourceURIs = new ArrayList<>();
 		for (File inputFile : inputFiles) {
 			final URI inputURI = URI.createFileURI(inputFile.getAbsolutePath());
 			inputResourceURIs.add(inputURI);
-			LOGGER.info("Reading: "+inputURI);
-			inputResourceSet.getResource(inputURI, true);
+			if (!isStreamed(inputURI)) {
+				loadedResourceURIs.add(inputURI);
+			}
+		}
+		Map<Integer, List<URI>> releasedResourceURIs = Collections.emptyMap();
+		try (var phase = report.measurePhase("load")) {
+			if (options.releaseInputs) {
+				// load the input files on demand instead, and release them after their last use
+				releasedResourceURIs = getReleasedResourceURIs(inputResourceSet, inputResourceURIs);
+			} else if (options.threads > 1) {
+				loadInputResourcesInParallel(injector, inputResourceSet, loadedResourceURIs);
+			} else {
+				for (URI inputURI : loadedResourceURIs) {
+					LOGGER.info("Reading: "+inputURI);
+					try (var file = report.measureFile(inputURI, "load")) {
+						loadInputResource(inputResourceSet, inputURI);
+					}
+				}
+			}
 		}
 		
 		// load the Oml registries here after the input have been read
-		OmlStandaloneSetup.doSetup();
-		OmlXMIResourceFactory.register();
-		OmlJsonResourceFactory.register();
+		try (var phase = report.measurePhase("omlSetup")) {
+			OmlStandaloneSetup.doSetup();
+			OmlXMIResourceFactory.register();
+			OmlJsonResourceFactory.register();
+		}
+		
+		final boolean parallelConversion = options.parallelConversion && !options.releaseInputs && options.threads > 1 && loadedResourceURIs.size() > 1;
+		if (options.parallelConversion && options.releaseInputs) {
+			LOGGER.warn("Parallel conversion is ignored when releasing the input files");
+		}
 		
-		final ResourceSet outputResourceSet = new ResourceSetImpl();
+		final ResourceSetImpl outputResourceSet = parallelConversion ? new ConcurrentResourceSet() : new ResourceSetImpl();
 		outputResourceSet.getLoadOptions().put(OmlConstants.RESOLVE_IRI_USING_RESOURCE_SET, Boolean.TRUE);
-		outputResourceSet.eAdapters().add(new ECrossReferenceAdapter());
+		if (options.lean) {
+			// the references are only resolved by resource URI, which the index answers directly
+			// (the concurrent resource set synchronizes the index when converting in parallel)
+			outputResourceSet.setURIResourceMap(new HashMap<>());
+		} else if (!parallelConversion) {
+			outputResourceSet.eAdapters().add(new ECrossReferenceAdapter());
+		}
 
 		//final File outputFolder = new File(options.outputFolderPath);		
 
+		// create the caches shared by all conversions
+		final IriCache iriCache = new IriCache();
+		final AbstractnessCache abstractnessCache = new AbstractnessCache();
+
 		// create the Oml builder
 		final OmlBuilder builder = new OmlBuilder(outputResourceSet);
 		
 		// start the Oml Builder
 		builder.start();
 
+		// write the streamed instance files directly when possible
+		final boolean directDescriptions = options.directDescriptionOutput && OmlConstants.OML_EXTENSION.equals(options.outputFileExtension);
+		if (options.directDescriptionOutput && !directDescriptions) {
+			LOGGER.warn("Direct description output is ignored for the "+options.outputFileExtension+" output file extension");
+		}
+
 		// convert the input resources
-		for (URI uri : inputResourceURIs) {
-			Resource inputResource = inputResourceSet.getResource(uri, true);
-			Ecore2Oml e2o = new Ecore2Oml(inputResource, builder, options);
-			e2o.run();
+		try (var phase = report.measurePhase("convert")) {
+			if (parallelConversion) {
+				convertInParallel(inputResourceSet, loadedResourceURIs, (ConcurrentResourceSet) outputResourceSet, iriCache, abstractnessCache);
+			}
+			for (int index = 0; index < inputResourceURIs.size(); index++) {
+				final URI uri = inputResourceURIs.get(index);
+				if (isStreamed(uri)) {
+					LOGGER.info("Streaming: "+uri);
+					Ecore2Oml e2o = new Ecore2Oml(new ResourceImpl(uri), builder, options, iriCache, abstractnessCache);
+					try (var file = report.measureFile(uri, "convert")) {
+						final boolean written = directDescriptions && e2o.runDirect(new XmiInstanceReader(uri, inputResourceSet));
+						if (!written) {
+							if (directDescriptions) {
+								// build the description in memory instead since it cannot be written directly
+								e2o = new Ecore2Oml(new ResourceImpl(uri), builder, options, iriCache, abstractnessCache);
+							}
+							e2o.run(new XmiInstanceReader(uri, inputResourceSet));
+						}
+					}
+					reportCounts(uri, e2o);
+				} else if (!parallelConversion) {
+					Resource inputResource = inputResourceSet.getResource(uri, false);
+					if (inputResource == null || !inputResource.isLoaded()) {
+						LOGGER.info("Reading: "+uri);
+						try (var file = report.measureFile(uri, "load")) {
+							inputResource = loadInputResource(inputResourceSet, uri);
+						}
+					}
+					Ecore2Oml e2o = new Ecore2Oml(inputResource, builder, options, iriCache, abstractnessCache);
+					try (var file = report.measureFile(uri, "convert")) {
+						e2o.run();
+					}
+					reportCounts(uri, e2o);
+				}
+				releaseInputResources(inputResourceSet, releasedResourceURIs.getOrDefault(index, Collections.emptyList()), iriCache, abstractnessCache);
+			}
+		}
+		if (options.releaseInputs) {
+			LOGGER.info("Peak heap used: "+getPeakHeap()/(1024*1024)+" MB");
 		}
+		LOGGER.debug(iriCache);
 
 		// get the output resources to save
 		List<Resource> outputResources = new ArrayList<>(builder.getResourceSet().getResources()); 
 
 		// finish the Oml builder
-		builder.finish();
+		try (var phase = report.measurePhase("finish")) {
+			builder.finish();
+		}
+		if (options.debug || options.reportPath != null) {
+			// measuring the heap forces a full collection, so it is only done when debugging or reporting
+			final long usedHeap = getUsedHeap();
+			report.setHeapAfterConversion(usedHeap, options.lean);
+			LOGGER.debug("Heap used after conversion: "+usedHeap/(1024*1024)+" MB ("+(options.lean ? "lean" : "with cross reference adapter")+")");
+		}
 		
 		// save the output resources here instead of calling builder.save in order to log
+		final List<Resource> resourcesToSave = new ArrayList<>();
 		for (Resource outputResource : outputResources) {
-			if (outputResource.getURI().fileExtension().equals("oml")) {
-				LOGGER.info("Saving: "+outputResource.getURI());
-				outputResource.save(Collections.EMPTY_MAP);
+			if (options.outputFileExtension.equals(outputResource.getURI().fileExtension())) {
+				resourcesToSave.add(outputResource);
 			}
 		}
+		try (var phase = report.measurePhase("save")) {
+			saveOutputResources(resourcesToSave);
+		}
+
+		// write the report
+		if (options.reportPath != null) {
+			report.write(new File(options.reportPath), getAppVersion());
+			LOGGER.info("Report: "+options.reportPath);
+		}
 
 		LOGGER.info("=================================================================");
 		LOGGER.info("                          E N D");
 		LOGGER.info("=================================================================");
 	}
 
-	private ResourceSet createInputResourceSet() {
-		final Injector injector = new XcoreStandaloneSetup().createInjectorAndDoEMFRegistration();
+	private ResourceSet createInputResourceSet(Injector injector) throws IOException {
 		final XtextResourceSet resourceSet = injector.getInstance(XtextResourceSet.class);
 		
+		// the package registry is shared with the resource sets loading in parallel
+		resourceSet.setPackageRegistry(new SynchronizedPackageRegistry(resourceSet.getPackageRegistry()));
+		
 		XMLResourceFactoryImpl resourceFactory = new XMLResourceFactoryImpl();
 		Resource.Factory.Registry.INSTANCE.getExtensionToFactoryMap().put("*", resourceFactory);
+		if (options.fastLoad) {
+			FastLoad.configure(resourceSet);
+		}
+		if (inputResourceCache != null) {
+			inputResourceCache.configure(resourceSet);
+		}
 		
-		// load any referenced Ecore files
+		// load any referenced Ecore files (or register them to be loaded on demand)
 	    EPackage.Registry packageRegistry = injector.getInstance(EPackage.Registry.class);
+		if (options.lazyReferencedEcores) {
+			final XtextResourceSet referencedResourceSet = injector.getInstance(XtextResourceSet.class);
+			referencedResourceSet.setPackageRegistry(resourceSet.getPackageRegistry());
+			referencedResourceSet.setURIConverter(resourceSet.getURIConverter());
+			referencedResourceSet.getLoadOptions().putAll(resourceSet.getLoadOptions());
+			if (options.fastLoad) {
+				FastLoad.configure(referencedResourceSet);
+			}
+			referencedEcoreRegistry = new ReferencedEcoreRegistry(referencedResourceSet);
+		}
 		for (String path : options.referencedEcorePaths) {
+			if (referencedEcoreRegistry != null && ECORE.equals(getFileExtension(new File(path)))) {
+				final URI referencedURI = URI.createFileURI(new File(path).toPath().toAbsolutePath().normalize().toString());
+				// registered with the resource set since its (synchronized) registry is shared by the loading threads
+				referencedEcoreRegistry.register(resourceSet.getPackageRegistry(), referencedURI);
+				continue;
+			}
 			final URI inputURI = URI.createFileURI(path);
 			Resource inputResource = resourceSet.getResource(inputURI, true);
 			if (inputResource != null) {
@@ -263,22 +527,291 @@ public class Ecore2OmlApp {
 		
 		return resourceSet;
 	}
+
+	/*
+	 * Loads the given input files concurrently, each thread parsing into its own resource set
+	 * (sharing the synchronized package registry of the given one), then attaches the loaded resources 
+	 * to the given resource set in the original order so that cross references get resolved there as in 
+	 * the sequential case. Xcore files are then loaded in the given resource set since their linking needs 
+	 * the other Xcore resources (and may resolve into the other attached inputs).
+	 */
+	private void loadInputResourcesInParallel(Injector injector, ResourceSet resourceSet, List<URI> inputURIs) throws IOException {
+		final ThreadLocal<ResourceSet> threadResourceSet = ThreadLocal.withInitial(() -> {
+			final XtextResourceSet rs = injector.getInstance(XtextResourceSet.class);
+			rs.setPackageRegistry(resourceSet.getPackageRegistry());
+			rs.setURIConverter(resourceSet.getURIConverter());
+			rs.getLoadOptions().putAll(resourceSet.getLoadOptions());
+			if (options.fastLoad) {
+				FastLoad.configure(rs);
+			}
+			return rs;
+		});
+		
+		final ExecutorService executor = Executors.newFixedThreadPool(options.threads);
+		try {
+			final List<Future<Resource>> futures = new ArrayList<>();
+			final List<URI> xcoreURIs = new ArrayList<>();
+			for (URI inputURI : inputURIs) {
+				if (XCORE.equals(inputURI.fileExtension())) {
+					xcoreURIs.add(inputURI);
+				} else {
+					futures.add(executor.submit(() -> {
+						LOGGER.info("Reading: "+inputURI);
+						try (var file = report.measureFile(inputURI, "load")) {
+							return loadInputResource(threadResourceSet.get(), inputURI);
+						}
+					}));
+				}
+			}
+			for (Future<Resource> future : futures) {
+				// adding the resource removes it from its loading resource set
+				resourceSet.getResources().add(future.get());
+			}
+			// the Xcore files are loaded once all other inputs are attached, since their linking may demand load them
+			for (URI inputURI : xcoreURIs) {
+				LOGGER.info("Reading: "+inputURI);
+				try (var file = report.measureFile(inputURI, "load")) {
+					loadInputResource(resourceSet, inputURI);
+				}
+			}
+		} catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+			throw new IOException("Interrupted while loading input files", e);
+		} catch (ExecutionException e) {
+			throw new IOException("Failed to load input files", e.getCause());
+		} finally {
+			executor.shutdownNow();
+		}
+	}
 	
-	// Utility methods
-	
-	private Collection<File> collectInputFiles(File directory, List<String> inputFileExtensions) {
-		final List<File> inputFiles = new ArrayList<File>();
-		for (File file : directory.listFiles()) {
-			if (file.isFile()) {
-				final String ext = getFileExtension(file);
-				if (inputFileExtensions.contains(ext)) {
-					inputFiles.add(file);
+	/*
+	 * Scans the input files (without loading them, see InputReferenceScanner) for the other input files they 
+	 * reference, and gives the input files to release after converting each input file (by index), which 
+	 * are those not needed (i.e., transitively referenced) by the remaining input files. The streamed files 
+	 * are taken to need all the Ecore files, and the Xcore and referenced Ecore files are neither scanned 
+	 * nor released.
+	 */
+	private Map<Integer, List<URI>> getReleasedResourceURIs(ResourceSet resourceSet, List<URI> inputURIs) throws IOException {
+		final Set<URI> kept = new HashSet<>();
+		for (URI uri : inputURIs) {
+			if (XCORE.equals(uri.fileExtension())) {
+				kept.add(uri);
+			}
+		}
+		for (String path : options.referencedEcorePaths) {
+			kept.add(URI.createFileURI(new File(path).getAbsolutePath()));
+		}
+		final List<URI> ecoreURIs = inputURIs.stream().filter(u -> ECORE.equals(u.fileExtension())).collect(Collectors.toList());
+		final InputReferenceScanner scanner = new InputReferenceScanner(resourceSet.getURIConverter(), inputURIs, ecoreURIs);
+		final Map<URI, Collection<URI>> dependencies = new HashMap<>();
+		for (URI uri : inputURIs) {
+			if (isStreamed(uri)) {
+				dependencies.put(uri, ecoreURIs);
+			} else if (!kept.contains(uri)) {
+				LOGGER.info("Scanning: "+uri);
+				dependencies.put(uri, scanner.getReferencedURIs(uri));
+			}
+		}
+		
+		// the last input file (by index) whose conversion needs each input file: walking the input files
+		// from last to first, an input file is first visited from the last one that (transitively) needs it
+		final Map<URI, Integer> lastUses = new HashMap<>();
+		final Deque<URI> stack = new ArrayDeque<>();
+		for (int index = inputURIs.size()-1; index >= 0; index--) {
+			if (!lastUses.containsKey(inputURIs.get(index))) {
+				stack.push(inputURIs.get(index));
+				lastUses.put(inputURIs.get(index), index);
+			}
+			while (!stack.isEmpty()) {
+				for (URI dependency : dependencies.getOrDefault(stack.pop(), Collections.emptyList())) {
+					if (!lastUses.containsKey(dependency)) {
+						lastUses.put(dependency, index);
+						stack.push(dependency);
+					}
 				}
-			} else if (file.isDirectory()) {
-				inputFiles.addAll(collectInputFiles(file, inputFileExtensions));
 			}
 		}
-		return inputFiles;
+		
+		final Map<Integer, List<URI>> releases = new HashMap<>();
+		for (URI uri : inputURIs) {
+			if (!kept.contains(uri) && !isStreamed(uri)) {
+				releases.computeIfAbsent(lastUses.get(uri), k -> new ArrayList<>()).add(uri);
+			}
+		}
+		return releases;
+	}
+
+	private void releaseInputResources(ResourceSet resourceSet, List<URI> uris, IriCache iriCache, AbstractnessCache abstractnessCache) {
+		for (URI uri : uris) {
+			final Resource resource = resourceSet.getResource(uri, false);
+			if (resource != null) {
+				iriCache.evict(resource);
+				abstractnessCache.evict(resource);
+				resource.unload();
+				resourceSet.getResources().remove(resource);
+				LOGGER.debug("Released: "+uri);
+			}
+		}
+	}
+
+	private static long getPeakHeap() {
+		long peak = 0;
+		for (MemoryPoolMXBean pool : ManagementFactory.getMemoryPoolMXBeans()) {
+			if (pool.getType() == MemoryType.HEAP) {
+				peak += pool.getPeakUsage().getUsed();
+			}
+		}
+		return peak;
+	}
+
+	/*
+	 * Converts the input resources concurrently on a fork-join pool, each against its own Oml builder
+	 * sharing the output resource set. The merge step then puts the output resources in input order, 
+	 * attaches the cross reference adapter (unless lean), and finishes the builders in input order, which resolves 
+	 * their deferred references, before the main builder gets finished by the caller.
+	 */
+	private void convertInParallel(ResourceSet inputResourceSet, List<URI> inputURIs, ConcurrentResourceSet outputResourceSet, IriCache iriCache, AbstractnessCache abstractnessCache) throws IOException {
+		// resolve all proxies up front so no input resource gets loaded while converting
+		final List<Resource> inputResources = new ArrayList<>();
+		for (URI uri : inputURIs) {
+			inputResources.add(inputResourceSet.getResource(uri, true));
+		}
+		EcoreUtil.resolveAll(inputResourceSet);
+		if (referencedEcoreRegistry != null) {
+			// and those between the referenced files loaded on demand, which are in a resource set of their own
+			referencedEcoreRegistry.resolveAll();
+		}
+		
+		final ForkJoinPool pool = new ForkJoinPool(options.threads);
+		try {
+			final List<ForkJoinTask<OmlBuilder>> tasks = new ArrayList<>();
+			for (int i = 0; i < inputResources.size(); i++) {
+				final int index = i;
+				tasks.add(pool.submit(() -> {
+					outputResourceSet.setPartition(index);
+					try {
+						final OmlBuilder partialBuilder = new OmlBuilder(outputResourceSet);
+						partialBuilder.start();
+						Ecore2Oml e2o = new Ecore2Oml(inputResources.get(index), partialBuilder, options, iriCache, abstractnessCache);
+						try (var file = report.measureFile(inputURIs.get(index), "convert")) {
+							e2o.run();
+						}
+						reportCounts(inputURIs.get(index), e2o);
+						return partialBuilder;
+					} finally {
+						outputResourceSet.clearPartition();
+					}
+				}));
+			}
+			final List<OmlBuilder> partialBuilders = new ArrayList<>();
+			for (ForkJoinTask<OmlBuilder> task : tasks) {
+				partialBuilders.add(task.get());
+			}
+			
+			// merge deterministically
+			outputResourceSet.sortByPartition();
+			if (!options.lean) {
+				outputResourceSet.eAdapters().add(new ECrossReferenceAdapter());
+			}
+			for (OmlBuilder partialBuilder : partialBuilders) {
+				partialBuilder.finish();
+			}
+		} catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+			throw new IOException("Interrupted while converting input files", e);
+		} catch (ExecutionException e) {
+			throw new IOException("Failed to convert input files", e.getCause());
+		} finally {
+			pool.shutdownNow();
+		}
+	}
+	
+	private static long getUsedHeap() {
+		final Runtime runtime = Runtime.getRuntime();
+		runtime.gc();
+		return runtime.totalMemory() - runtime.freeMemory();
+	}
+
+	/*
+	 * Saves the given resources on a pool bounded by the number of threads, each through a large 
+	 * output buffer, then logs the number of bytes written per file. Xtext (i.e., oml) resources are 
+	 * saved one at a time since they share the serializer, formatter and scoping of the injector.
+	 */
+	private void saveOutputResources(List<Resource> resources) throws IOException {
+		final boolean sequential = resources.stream().anyMatch(r -> r instanceof XtextResource);
+		final int threads = sequential ? 1 : Math.max(1, Math.min(options.threads, resources.size()));
+		final ExecutorService executor = Executors.newFixedThreadPool(threads);
+		try {
+			final long start = System.nanoTime();
+			final List<Future<SavedResource>> futures = new ArrayList<>();
+			for (Resource resource : resources) {
+				futures.add(executor.submit(() -> saveOutputResource(resource)));
+			}
+			long totalBytes = 0;
+			for (int i = 0; i < resources.size(); i++) {
+				final SavedResource saved = futures.get(i).get();
+				LOGGER.info("Saved: "+resources.get(i).getURI()+" ("+saved.bytes()+" bytes in "+saved.millis()+" ms)");
+				totalBytes += saved.bytes();
+			}
+			final long millis = (System.nanoTime() - start) / 1_000_000;
+			LOGGER.info("Saved "+resources.size()+" "+options.outputFileExtension+" files ("+totalBytes+" bytes in "+millis+" ms)");
+		} catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+			throw new IOException("Interrupted while saving output files", e);
+		} catch (ExecutionException e) {
+			throw new IOException("Failed to save output files", e.getCause());
+		} finally {
+			executor.shutdownNow();
+		}
+	}
+
+	private SavedResource saveOutputResource(Resource resource) throws IOException {
+		LOGGER.info("Saving: "+resource.getURI());
+		final ConversionEvents.ResourceSave event = new ConversionEvents.ResourceSave();
+		event.begin();
+		final long start = System.nanoTime();
+		final File file = new File(resource.getURI().toFileString());
+		file.getParentFile().mkdirs();
+		try (CountingOutputStream out = new CountingOutputStream(new BufferedOutputStream(new FileOutputStream(file), SAVE_BUFFER_SIZE))) {
+			resource.save(out, Collections.EMPTY_MAP);
+			out.flush();
+			if (event.shouldCommit()) {
+				event.uri = resource.getURI().toString();
+				event.bytes = out.getCount();
+				event.commit();
+			}
+			return new SavedResource(out.getCount(), (System.nanoTime() - start) / 1_000_000);
+		}
+	}
+
+	/*
+	 * The number of bytes written for a saved resource and the time it took
+	 */
+	private record SavedResource(long bytes, long millis) {}
+
+	// Utility methods
+
+	private Resource loadInputResource(ResourceSet resourceSet, URI uri) {
+		final ConversionEvents.FileLoad event = new ConversionEvents.FileLoad();
+		event.begin();
+		final Resource resource = resourceSet.getResource(uri, true);
+		if (event.shouldCommit()) {
+			event.uri = uri.toString();
+			event.fileSize = uri.isFile() ? new File(uri.toFileString()).length() : -1;
+			event.commit();
+		}
+		return resource;
+	}
+
+	private void reportCounts(URI uri, Ecore2Oml e2o) {
+		if (options.reportPath != null) {
+			report.addCounts(uri, e2o.getCounts(), e2o.getRelationBuildNanos());
+		}
+	}
+	
+	private boolean isStreamed(URI inputURI) {
+		final String ext = inputURI.fileExtension();
+		return options.streamInstances && !ECORE.equals(ext) && !XCORE.equals(ext);
 	}
 
 	private static String getFileExtension(File file) {
@@ -298,6 +831,29 @@ public class Ecore2OmlApp {
     	return (version != null) ? version : "<SNAPSHOT>";
 	}
 
+	/*
+	 * An output stream that counts the bytes written through it
+	 */
+	private static class CountingOutputStream extends FilterOutputStream {
+		private long count;
+		public CountingOutputStream(OutputStream out) {
+			super(out);
+		}
+		@Override
+		public void write(int b) throws IOException {
+			out.write(b);
+			count++;
+		}
+		@Override
+		public void write(byte[] b, int off, int len) throws IOException {
+			out.write(b, off, len);
+			count += len;
+		}
+		public long getCount() {
+			return count;
+		}
+	}
+
     /**
      * A parameter validator for an Input Ecore folder path.
      */
@@ -335,6 +891,23 @@ public class Ecore2OmlApp {
 	  	}
 	}
 
+    /**
+     * A parameter validator for an output OML file extension.
+     */
+	public static class OutputFileExtension implements IParameterValidator {
+		/**
+		 * Creates a new OutputFileExtension object
+		 */
+		public OutputFileExtension() {
+		}
+		@Override
+		public void validate(final String name, final String value) throws ParameterException {
+			if (!Arrays.asList(OmlConstants.OML_EXTENSION, OmlConstants.OMLXMI_EXTENSION, OmlConstants.OMLJSON_EXTENSION).contains(value)) {
+				throw new ParameterException("Parameter " + name + " should be one of oml, omlxmi or omljson");
+			}
+		}
+	}
+
     /**
      * A parameter validator for output OML Folder path.
      */
@@ -356,6 +929,27 @@ public class Ecore2OmlApp {
 		}
 	}
 
+    /**
+     * A parameter validator for positive integers (e.g., the number of threads)
+     */
+	public static class PositiveInteger implements IParameterValidator {
+		/**
+		 * Creates a new PositiveInteger object
+		 */
+		public PositiveInteger() {
+		}
+		@Override
+		public void validate(final String name, final String value) throws ParameterException {
+			try {
+				if (Integer.parseInt(value) < 1) {
+					throw new ParameterException("Parameter " + name + " should be a positive integer");
+				}
+			} catch (NumberFormatException e) {
+				throw new ParameterException("Parameter " + name + " should be a positive integer");
+			}
+		}
+	}
+
     /**
      * A parameter validator for namespace mappings
      */
@@ -1,14 +1,24 @@
 package io.opencaesar.ecore2oml;
 
+import java.util.ArrayDeque;
 import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.Deque;
+import java.util.HashMap;
+import java.util.HashSet;
 import java.util.Iterator;
 import java.util.LinkedHashMap;
 import java.util.LinkedHashSet;
 import java.util.List;
 import java.util.Map;
 import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
 import java.util.stream.Collectors;
 
+import org.apache.log4j.LogManager;
+import org.apache.log4j.Logger;
 import org.eclipse.emf.ecore.EAnnotation;
 import org.eclipse.emf.ecore.EAttribute;
 import org.eclipse.emf.ecore.EClass;
@@ -45,11 +55,6 @@ class EcoreUtilities {
 		return Ecore_IRI+"#";
 	}
 
-	public static boolean isAbstract(EClass object) {
-		return (object.isAbstract() || object.isInterface()) && 
-				object.getESuperTypes().stream().allMatch(i -> isAbstract(i));
-	}
-
 	public static Set<EAttribute> getSuperEAttributes(EAttribute object) {
 		Set<EAttribute> superRefs = new LinkedHashSet<EAttribute>() ;
 		EAnnotation ann = object.getEAnnotation("subsets");
@@ -94,21 +99,130 @@ class EcoreUtilities {
 		return supers;
 	}
 	
+	/**
+	 * Abstractness Cache
+	 * 
+	 * A cache of isAbstract for the classes of a run, where the supertypes of a class are evaluated 
+	 * (once) before the class. It is safe to use from multiple threads.
+	 */
+	public static class AbstractnessCache {
+		
+		private final Map<EClass, Boolean> abstracts = new ConcurrentHashMap<>();
+		
+		public AbstractnessCache() {
+		}
+		
+		public boolean isAbstract(EClass object) {
+			Boolean isAbstract = abstracts.get(object);
+			if (isAbstract != null) {
+				return isAbstract;
+			}
+			Set<EClass> visiting = new HashSet<>();
+			Deque<EClass> stack = new ArrayDeque<>();
+			stack.push(object);
+			while (!stack.isEmpty()) {
+				EClass c = stack.peek();
+				if (abstracts.containsKey(c)) {
+					stack.pop();
+				} else if (!(c.isAbstract() || c.isInterface())) {
+					stack.pop();
+					abstracts.put(c, Boolean.FALSE);
+				} else if (visiting.add(c)) {
+					for (EClass sup : c.getESuperTypes()) {
+						// a supertype being visited is a cycle in the hierarchy, so it is skipped 
+						if (!abstracts.containsKey(sup) && !visiting.contains(sup)) {
+							stack.push(sup);
+						}
+					}
+				} else {
+					stack.pop();
+					abstracts.put(c, c.getESuperTypes().stream().allMatch(i -> abstracts.getOrDefault(i, Boolean.FALSE)));
+				}
+			}
+			return abstracts.get(object);
+		}
+
+		/**
+		 * Evicts the entries of the classes of the given resource (e.g., before it gets unloaded)
+		 * 
+		 * @param resource the resource whose classes to evict
+		 */
+		public void evict(Resource resource) {
+			abstracts.keySet().removeIf(c -> c.eResource() == resource);
+		}
+	}
+	
+	/**
+	 * Super Feature Index
+	 * 
+	 * A read-only index of the features subsetted or redefined by the features of a resource
+	 * (and by the features they transitively reach that way), built in one pass over the resource.
+	 */
+	public static class SuperFeatureIndex {
+		
+		private final Map<EStructuralFeature, Set<EStructuralFeature>> supers = new HashMap<>();
+		
+		public SuperFeatureIndex(Resource resource) {
+			Deque<EStructuralFeature> pending = new ArrayDeque<>();
+			var i = resource.getAllContents();
+			while (i.hasNext()) {
+				EObject o = i.next();
+				if (o instanceof EStructuralFeature) {
+					pending.push((EStructuralFeature)o);
+				}
+			}
+			while (!pending.isEmpty()) {
+				EStructuralFeature f = pending.pop();
+				if (!supers.containsKey(f)) {
+					Set<EStructuralFeature> fSupers = EcoreUtilities.getSuperEStructuralFeatures(f);
+					supers.put(f, fSupers.isEmpty() ? Collections.emptySet() : Collections.unmodifiableSet(fSupers));
+					fSupers.forEach(pending::push);
+					if (f instanceof EReference && ((EReference)f).getEOpposite() != null) {
+						pending.push(((EReference)f).getEOpposite());
+					}
+				}
+			}
+		}
+		
+		public Set<EStructuralFeature> getSuperEStructuralFeatures(EStructuralFeature object) {
+			Set<EStructuralFeature> fSupers = supers.get(object);
+			// a feature outside the indexed resource is looked up directly
+			return (fSupers != null) ? fSupers : Collections.unmodifiableSet(EcoreUtilities.getSuperEStructuralFeatures(object));
+		}
+		
+		@SuppressWarnings("unchecked")
+		public Set<EAttribute> getSuperEAttributes(EAttribute object) {
+			return (Set<EAttribute>)(Set<?>) getSuperEStructuralFeatures(object);
+		}
+		
+		@SuppressWarnings("unchecked")
+		public Set<EReference> getSuperEReferences(EReference object) {
+			return (Set<EReference>)(Set<?>) getSuperEStructuralFeatures(object);
+		}
+	}
+	
 	/**
 	 * ERelation Builder
 	 */
 	public static class ERelationBuilder {
 		
+		private static final Logger LOGGER = LogManager.getLogger(ERelationBuilder.class);
+
 		private Map<EReference, ERelation> eRelations = new LinkedHashMap<>();
 
 		private List<Set<ERelation>> eRelationGroups = new ArrayList<>();
 
+		private Set<ERelation> groupedERelations = new HashSet<>();
+
+		private SuperFeatureIndex superFeatures;
+
 		public class ERelation {
 			public Set<ERelation> supers = new LinkedHashSet<>();
 			public Set<ERelation> subs = new LinkedHashSet<>();
 			public List<EReference> ends = new ArrayList<>();
 			public EReference forward;
 			public EReference reverse;
+			private int index;
 			@Override
 			public String toString() {
 				Iterator<EReference> i = ends.iterator();
@@ -122,7 +236,9 @@ class EcoreUtilities {
 		public ERelationBuilder() {
 		}
 		
-		public void build(Resource inputResource) {
+		public void build(Resource inputResource, SuperFeatureIndex superFeatures) {
+			this.superFeatures = superFeatures;
+			
 			// create eRelations
 			var i = inputResource.getAllContents();
 			while (i.hasNext()) {
@@ -134,18 +250,25 @@ class EcoreUtilities {
 					}
 				}
 			}
-			// remove redundant eRelation super types
-			for (ERelation a : eRelations.values()) {
-				removeRedundantSupers(a);
-			}
+			// break cycles of supers, then remove redundant eRelation super types
+			List<ERelation> distinctERelations = new ArrayList<>(new LinkedHashSet<>(eRelations.values()));
+			breakCyclicSupers(distinctERelations);
+			removeRedundantSupers(distinctERelations);
 			// calculate disjoint eRelation groups
 			for (ERelation a : eRelations.values()) {
-				putInERelationGroup(a, null);
+				putInERelationGroup(a);
 			}
 			
 			// determine the forward ends consistently within each group 
 			for (Set<ERelation> g : eRelationGroups) {
+				final ConversionEvents.RelationGroup event = new ConversionEvents.RelationGroup();
+				event.begin();
 				fixOrderOfEndsInGroup(g);
+				if (event.shouldCommit()) {
+					event.relation = g.isEmpty() ? null : g.iterator().next().toString();
+					event.size = g.size();
+					event.commit();
+				}
 			}
 		}
 		
@@ -153,73 +276,145 @@ class EcoreUtilities {
 			return eRelations.get(eRef);
 		}
 
-		private void removeRedundantSupers(ERelation a) {
-			Map<ERelation, Set<ERelation>> superMap = new LinkedHashMap<>();
-			a.supers.forEach(i -> superMap.put(i, getAllSupers(i)));
-			Set<ERelation> redundants = new LinkedHashSet<>();
-			Iterator<ERelation> i = a.supers.iterator();
-			while (i.hasNext()) {
-				ERelation superAss = i.next();
+		/*
+		 * Removes the supers of every given eRelation that are also (transitive) supers of its other supers.
+		 * The supers reachable from the other supers are found by a traversal that marks the visited eRelations
+		 * with the index of the eRelation being reduced, so no closure gets stored. Removing a redundant super
+		 * does not change what is reachable, so the eRelations can be reduced in any order.
+		 */
+		private void removeRedundantSupers(List<ERelation> eRelations) {
+			for (int i = 0; i < eRelations.size(); i++) {
+				eRelations.get(i).index = i;
+			}
+			int[] visitedBy = new int[eRelations.size()];
+			Arrays.fill(visitedBy, -1);
+			Deque<ERelation> stack = new ArrayDeque<>();
+			for (ERelation a : eRelations) {
+				if (a.supers.size() < 2) {
+					continue;
+				}
 				for (ERelation s : a.supers) {
-					if (superMap.get(s).contains(superAss)) {
-						redundants.add(superAss);
+					for (ERelation ss : s.supers) {
+						stack.push(ss);
+					}
+				}
+				Set<ERelation> redundants = new LinkedHashSet<>();
+				while (!stack.isEmpty()) {
+					ERelation r = stack.pop();
+					if (visitedBy[r.index] != a.index) {
+						visitedBy[r.index] = a.index;
+						if (a.supers.contains(r)) {
+							redundants.add(r);
+						}
+						for (ERelation s : r.supers) {
+							stack.push(s);
+						}
 					}
-				};
+				}
+				a.supers.removeAll(redundants);
 			}
-			a.supers.removeAll(redundants);
 		}
 		
-		private Set<ERelation> getAllSupers(ERelation a) {
-			Set<ERelation> allSupers = new LinkedHashSet<>();
-			for (ERelation superAss : a.supers) {
-				allSupers.add(superAss);
-				allSupers.addAll(getAllSupers(superAss));
+		/*
+		 * Finds the cycles of supers by a depth-first traversal (visiting the supers of an eRelation before
+		 * the eRelation itself), and breaks each of them by removing the super that closes it.
+		 */
+		private void breakCyclicSupers(List<ERelation> eRelations) {
+			for (int i = 0; i < eRelations.size(); i++) {
+				eRelations.get(i).index = i;
+			}
+			byte[] states = new byte[eRelations.size()]; // 0: not visited, 1: visiting, 2: visited
+			Deque<ERelation> stack = new ArrayDeque<>();
+			for (ERelation root : eRelations) {
+				if (states[root.index] == 0) {
+					stack.push(root);
+				}
+				while (!stack.isEmpty()) {
+					ERelation a = stack.peek();
+					if (states[a.index] == 0) {
+						states[a.index] = 1;
+						for (Iterator<ERelation> i = a.supers.iterator(); i.hasNext();) {
+							ERelation s = i.next();
+							if (states[s.index] == 1) {
+								LOGGER.warn("Ignoring the cyclic subsets/redefines annotations from "+a+" to "+s);
+								i.remove();
+								s.subs.remove(a);
+							} else if (states[s.index] == 0) {
+								stack.push(s);
+							}
+						}
+					} else {
+						stack.pop();
+						states[a.index] = 2;
+					}
+				}
 			}
-			return allSupers;
 		}
 		
+		/*
+		 * Gets the eRelation of the given reference, creating it along with those of its supers. The supers
+		 * are walked depth first on an explicit stack, creating the eRelations in the same order as a recursion
+		 * over the supers of each end would, and linking each one to its sub once it is complete.
+		 */
 		private ERelation getERelation(EReference e) {
-			if (!eRelations.containsKey(e)) {
-				ERelation a = new ERelation();
-				eRelations.put(e, a);
-				a.ends.add(e);
-				for (EReference superRef : getSuperEReferences(e)) {
-					ERelation superAss = getERelation(superRef);
-					a.supers.add(superAss);
-					superAss.subs.add(a);
-				}
-				if (e.getEOpposite() != null) {
-					EReference o = e.getEOpposite();
-					eRelations.put(o, a);
-					a.ends.add(o);
-					for (EReference superRef : getSuperEReferences(o)) {
-						ERelation superAss = getERelation(superRef);
-						a.supers.add(superAss);
-						superAss.subs.add(a);
+			ERelation existing = eRelations.get(e);
+			if (existing != null) {
+				return existing;
+			}
+			Deque<RelationStep> stack = new ArrayDeque<>();
+			stack.push(new RelationStep(createERelation(e), e, null));
+			while (!stack.isEmpty()) {
+				RelationStep step = stack.peek();
+				if (step.superRefs.hasNext()) {
+					EReference superRef = step.superRefs.next();
+					ERelation superAss = eRelations.get(superRef);
+					if (superAss == null) {
+						stack.push(new RelationStep(createERelation(superRef), superRef, step.eRelation));
+					} else {
+						step.eRelation.supers.add(superAss);
+						superAss.subs.add(step.eRelation);
+					}
+				} else if (!step.opposite && step.ref.getEOpposite() != null) {
+					EReference o = step.ref.getEOpposite();
+					eRelations.put(o, step.eRelation);
+					step.eRelation.ends.add(o);
+					step.opposite = true;
+					step.superRefs = superFeatures.getSuperEReferences(o).iterator();
+				} else {
+					stack.pop();
+					if (step.sub != null) {
+						ERelation superAss = eRelations.get(step.ref);
+						step.sub.supers.add(superAss);
+						superAss.subs.add(step.sub);
 					}
 				}
 			}
 			return eRelations.get(e);
 		}
 		
-		private void putInERelationGroup(ERelation a, Set<ERelation> group) {
-			if (group == null) {
-				for (Set<ERelation> g : eRelationGroups) {
-					if (g.contains(a)) {
-						return;
-					}
-				}
-				group = new LinkedHashSet<>();
-				eRelationGroups.add(group);
+		private ERelation createERelation(EReference e) {
+			ERelation a = new ERelation();
+			eRelations.put(e, a);
+			a.ends.add(e);
+			return a;
+		}
+		
+		private void putInERelationGroup(ERelation a) {
+			if (groupedERelations.contains(a)) {
+				return;
 			}
-			if (!group.contains(a)) {
-				group.add(a);
-				for (ERelation s : a.supers) {
-					putInERelationGroup(s, group);
-				};
-				for (ERelation s : a.subs) {
-					putInERelationGroup(s, group);
-				};
+			Set<ERelation> group = new LinkedHashSet<>();
+			eRelationGroups.add(group);
+			// depth-first traversal of supers then subs (the group order matters when fixing the ends)
+			Deque<ERelation> stack = new ArrayDeque<>();
+			stack.push(a);
+			while (!stack.isEmpty()) {
+				ERelation r = stack.pop();
+				if (groupedERelations.add(r)) {
+					group.add(r);
+					pushReversed(stack, r.subs);
+					pushReversed(stack, r.supers);
+				}
 			}
 		}	
 		
@@ -241,42 +436,67 @@ class EcoreUtilities {
 			ERelation a = eRelations.get(forward);
 			a.forward = forward;
 			a.reverse = forward.getEOpposite();
-			a.subs.forEach(s -> setForwardSub(s, a));
+			setForwards(a);
 		}
 		
-		private void setForwardSub(ERelation ass, ERelation superAss) {
-			if (ass.forward == null && ass.reverse == null) {
-				Iterator<EReference> i = ass.ends.iterator();
-				EReference ref1 = i.next();
-				EReference ref2 = ref1.getEOpposite();
-				if ((ref1 != null && superAss.forward != null && getSuperEReferences(ref1).contains(superAss.forward)) ||
-					(ref2 != null && superAss.reverse != null && getSuperEReferences(ref2).contains(superAss.reverse))) {
-					ass.forward = ref1;
-					ass.reverse = ref1.getEOpposite();
-				} else {
-					ass.forward = ref1.getEOpposite();
-					ass.reverse = ref1;
+		private void setForwards(ERelation a) {
+			// depth-first traversal of subs then supers, starting with the subs of the given eRelation
+			Deque<ForwardStep> stack = new ArrayDeque<>();
+			pushReversed(stack, a.subs, a, true);
+			while (!stack.isEmpty()) {
+				ForwardStep step = stack.pop();
+				ERelation ass = step.eRelation;
+				if (ass.forward == null && ass.reverse == null) {
+					if (step.fromSuper) {
+						setForwardSub(ass, step.from);
+					} else {
+						setForwardSuper(ass, step.from);
+					}
+					pushReversed(stack, ass.supers, ass, false);
+					pushReversed(stack, ass.subs, ass, true);
 				}
-				ass.subs.forEach(s -> setForwardSub(s, ass));
-				ass.supers.forEach(s -> setForwardSuper(s, ass));
+			}
+		}
+		
+		private void setForwardSub(ERelation ass, ERelation superAss) {
+			Iterator<EReference> i = ass.ends.iterator();
+			EReference ref1 = i.next();
+			EReference ref2 = ref1.getEOpposite();
+			if ((ref1 != null && superAss.forward != null && superFeatures.getSuperEReferences(ref1).contains(superAss.forward)) ||
+				(ref2 != null && superAss.reverse != null && superFeatures.getSuperEReferences(ref2).contains(superAss.reverse))) {
+				ass.forward = ref1;
+				ass.reverse = ref1.getEOpposite();
+			} else {
+				ass.forward = ref1.getEOpposite();
+				ass.reverse = ref1;
 			}
 		}
 		
 		private void setForwardSuper(ERelation ass, ERelation subAss) {
-			if (ass.forward == null && ass.reverse == null) {
-				Iterator<EReference> i = ass.ends.iterator();
-				EReference ref1 = i.next();
-				EReference ref2 = ref1.getEOpposite();
-				if ((ref1 != null && subAss.forward != null && getSuperEReferences(subAss.forward).contains(ref1)) ||
-					(ref2 != null && subAss.reverse != null && getSuperEReferences(subAss.reverse).contains(ref2))) {
-					ass.forward = ref1;
-					ass.reverse = ref1.getEOpposite();
-				} else {
-					ass.forward = ref1.getEOpposite();
-					ass.reverse = ref1;
-				}
-				ass.subs.forEach(s -> setForwardSub(s, ass));
-				ass.supers.forEach(s -> setForwardSuper(s, ass));
+			Iterator<EReference> i = ass.ends.iterator();
+			EReference ref1 = i.next();
+			EReference ref2 = ref1.getEOpposite();
+			if ((ref1 != null && subAss.forward != null && superFeatures.getSuperEReferences(subAss.forward).contains(ref1)) ||
+				(ref2 != null && subAss.reverse != null && superFeatures.getSuperEReferences(subAss.reverse).contains(ref2))) {
+				ass.forward = ref1;
+				ass.reverse = ref1.getEOpposite();
+			} else {
+				ass.forward = ref1.getEOpposite();
+				ass.reverse = ref1;
+			}
+		}
+
+		private static void pushReversed(Deque<ERelation> stack, Collection<ERelation> eRelations) {
+			List<ERelation> list = new ArrayList<>(eRelations);
+			for (int i = list.size()-1; i >= 0; i--) {
+				stack.push(list.get(i));
+			}
+		}
+
+		private static void pushReversed(Deque<ForwardStep> stack, Collection<ERelation> eRelations, ERelation from, boolean fromSuper) {
+			List<ERelation> list = new ArrayList<>(eRelations);
+			for (int i = list.size()-1; i >= 0; i--) {
+				stack.push(new ForwardStep(list.get(i), from, fromSuper));
 			}
 		}
 
@@ -306,12 +526,42 @@ class EcoreUtilities {
 					//one = ref1.getName().compareTo(ref2.getName()) > 0 ? ref1 : ref2;
 				//}
 			}
-			assert (one == null);
 			return one;
 		}
 		
 		private String getRelationName(EReference object) {
 			return object.getEContainingClass().getName() + "_"  + object.getName();
 		}
+
+		/*
+		 * A pending step of creating an eRelation, going through the supers of one of its ends
+		 */
+		private class RelationStep {
+			private final ERelation eRelation;
+			private final EReference ref;
+			private final ERelation sub;
+			private boolean opposite;
+			private Iterator<EReference> superRefs;
+			private RelationStep(ERelation eRelation, EReference ref, ERelation sub) {
+				this.eRelation = eRelation;
+				this.ref = ref;
+				this.sub = sub;
+				this.superRefs = superFeatures.getSuperEReferences(ref).iterator();
+			}
+		}
+
+		/*
+		 * A pending step of setting the forward end of an eRelation from a related one
+		 */
+		private static class ForwardStep {
+			private final ERelation eRelation;
+			private final ERelation from;
+			private final boolean fromSuper;
+			private ForwardStep(ERelation eRelation, ERelation from, boolean fromSuper) {
+				this.eRelation = eRelation;
+				this.from = from;
+				this.fromSuper = fromSuper;
+			}
+		}
 	}
 }
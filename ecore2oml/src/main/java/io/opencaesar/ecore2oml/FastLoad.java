@@ -0,0 +1,98 @@
+/**
+ * 
+ * Copyright 2022 Modelware Solutions LLC and CEA-LIST.
+ * 
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * 
+ */
+package io.opencaesar.ecore2oml;
+
+import java.io.BufferedInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import org.eclipse.emf.common.util.URI;
+import org.eclipse.emf.ecore.resource.Resource;
+import org.eclipse.emf.ecore.resource.ResourceSet;
+import org.eclipse.emf.ecore.resource.URIHandler;
+import org.eclipse.emf.ecore.resource.impl.FileURIHandlerImpl;
+import org.eclipse.emf.ecore.xmi.XMLParserPool;
+import org.eclipse.emf.ecore.xmi.XMLResource;
+import org.eclipse.emf.ecore.xmi.impl.XMLParserPoolImpl;
+import org.eclipse.emf.ecore.xmi.impl.XMLResourceImpl;
+
+/**
+ * A load profile tuned for large XMI and Ecore files.
+ * 
+ * The parsers are pooled across loads, IDREFs are resolved once a file has been parsed, the resources 
+ * index their objects by intrinsic ID as they get loaded, and files are read through a large buffer. 
+ * Xcore files are loaded as before. The XML names are not cached in a name to feature map, which made
+ * loading large XMI files slower than the lookups it saves.
+ */
+final class FastLoad {
+
+	private static final int BUFFER_SIZE = 1 << 16;
+
+	private static final XMLParserPool PARSER_POOL = new XMLParserPoolImpl(true);
+
+	private FastLoad() {
+	}
+
+	/**
+	 * Configures the given resource set to load with the profile
+	 * 
+	 * @param resourceSet the resource set to configure
+	 */
+	public static void configure(ResourceSet resourceSet) {
+		final Map<Object, Object> loadOptions = resourceSet.getLoadOptions();
+		loadOptions.put(XMLResource.OPTION_USE_PARSER_POOL, PARSER_POOL);
+		loadOptions.put(XMLResource.OPTION_DEFER_IDREF_RESOLUTION, Boolean.TRUE);
+		loadOptions.put(XMLResource.OPTION_USE_DEPRECATED_METHODS, Boolean.FALSE);
+		
+		resourceSet.getResourceFactoryRegistry().getExtensionToFactoryMap().put(Resource.Factory.Registry.DEFAULT_EXTENSION, new IntrinsicIDResourceFactory());
+		
+		final List<URIHandler> handlers = resourceSet.getURIConverter().getURIHandlers();
+		if (handlers.stream().noneMatch(h -> h instanceof BufferedFileURIHandler)) {
+			handlers.add(0, new BufferedFileURIHandler());
+		}
+	}
+
+	/*
+	 * A factory that creates the resources with the globally registered factories, giving the
+	 * XML ones an intrinsic ID map
+	 */
+	private static class IntrinsicIDResourceFactory implements Resource.Factory {
+		@Override
+		public Resource createResource(URI uri) {
+			final Resource.Factory factory = Resource.Factory.Registry.INSTANCE.getFactory(uri);
+			final Resource resource = (factory != null) ? factory.createResource(uri) : null;
+			if (resource instanceof XMLResourceImpl) {
+				((XMLResourceImpl) resource).setIntrinsicIDToEObjectMap(new HashMap<>());
+			}
+			return resource;
+		}
+	}
+
+	/*
+	 * A handler of file URIs that reads files through a large buffer
+	 */
+	private static class BufferedFileURIHandler extends FileURIHandlerImpl {
+		@Override
+		public InputStream createInputStream(URI uri, Map<?, ?> options) throws IOException {
+			return new BufferedInputStream(super.createInputStream(uri, options), BUFFER_SIZE);
+		}
+	}
+}
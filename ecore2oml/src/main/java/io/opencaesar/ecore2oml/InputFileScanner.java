@@ -0,0 +1,195 @@
+/**
+ * 
+ * Copyright 2022 Modelware Solutions LLC and CEA-LIST.
+ * 
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * 
+ */
+package io.opencaesar.ecore2oml;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.file.DirectoryStream;
+import java.nio.file.FileSystems;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.PathMatcher;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveTask;
+import java.util.function.Predicate;
+import java.util.stream.Collectors;
+
+import org.apache.log4j.LogManager;
+import org.apache.log4j.Logger;
+
+/**
+ * A scanner of the input files under a folder, with given extensions, matching include globs (if any)
+ * and not matching exclude globs, where an excluded folder is not descended into.
+ * 
+ * A glob is matched against the path relative to the scanned folder, or against the file name when it 
+ * has no '/' (e.g., "target" excludes every folder named target), and a ** wildcard followed by a '/' 
+ * also matches no folder (e.g., "**&#47;bin" excludes a bin folder at the top as well). The subfolders are scanned in parallel 
+ * and symbolic links are followed, except to a folder being scanned (which breaks link loops). The files 
+ * reached through several paths (i.e., aliased by links) are returned once, by their smallest path, and 
+ * the files are returned sorted by path.
+ */
+class InputFileScanner {
+
+	private static final Logger LOGGER = LogManager.getLogger(InputFileScanner.class);
+
+	private final Path root;
+	private final List<String> extensions;
+	private final List<Predicate<Path>> includes;
+	private final List<Predicate<Path>> excludes;
+
+	public InputFileScanner(File root, List<String> extensions, List<String> includes, List<String> excludes) {
+		this.root = root.toPath().toAbsolutePath().normalize();
+		this.extensions = extensions;
+		this.includes = includes.stream().map(InputFileScanner::getMatcher).collect(Collectors.toList());
+		this.excludes = excludes.stream().map(InputFileScanner::getMatcher).collect(Collectors.toList());
+	}
+
+	/**
+	 * Scans the input files
+	 * 
+	 * @param threads the number of threads to scan with
+	 * @return the input files sorted by path
+	 * @throws IOException when a folder cannot be read
+	 */
+	public List<File> scan(int threads) throws IOException {
+		final ForkJoinPool pool = new ForkJoinPool(threads);
+		try {
+			return pool.invoke(new ScanTask(root, Collections.emptySet())).values().stream()
+				.sorted()
+				.map(Path::toFile)
+				.collect(Collectors.toList());
+		} catch (UncheckedIOException e) {
+			throw e.getCause();
+		} finally {
+			pool.shutdown();
+		}
+	}
+
+	private boolean isIncluded(Path relativePath) {
+		final String ext = getFileExtension(relativePath);
+		return extensions.contains(ext) && (includes.isEmpty() || includes.stream().anyMatch(m -> m.test(relativePath)));
+	}
+
+	private boolean isExcluded(Path relativePath) {
+		return excludes.stream().anyMatch(m -> m.test(relativePath));
+	}
+
+	private static Predicate<Path> getMatcher(String glob) {
+		if (!glob.contains("/")) {
+			final PathMatcher matcher = FileSystems.getDefault().getPathMatcher("glob:"+glob);
+			return path -> matcher.matches(path.getFileName());
+		}
+		final List<PathMatcher> matchers = getGlobs(glob).stream()
+			.map(g -> FileSystems.getDefault().getPathMatcher("glob:"+g))
+			.collect(Collectors.toList());
+		return path -> matchers.stream().anyMatch(m -> m.matches(path));
+	}
+
+	/*
+	 * Gets the given glob with each of its ** wildcards followed by a '/' kept or removed, since the 
+	 * glob syntax of the path matcher needs them to match at least one folder
+	 */
+	private static Set<String> getGlobs(String glob) {
+		final Set<String> globs = new LinkedHashSet<>();
+		globs.add(glob);
+		final int i = glob.indexOf("**/");
+		if (i != -1) {
+			final String prefix = glob.substring(0, i+3);
+			for (String rest : getGlobs(glob.substring(i+3))) {
+				globs.add(prefix + rest);
+				globs.add(glob.substring(0, i) + rest);
+			}
+		}
+		return globs;
+	}
+
+	private static String getFileExtension(Path path) {
+		final String fileName = path.getFileName().toString();
+		final int i = fileName.lastIndexOf('.');
+		return (i != -1) ? fileName.substring(i+1) : "";
+	}
+
+	/*
+	 * Scans a folder, forking a task per subfolder, and gives the files found by their real paths
+	 */
+	private class ScanTask extends RecursiveTask<Map<Path, Path>> {
+		private static final long serialVersionUID = 1L;
+		private final Path folder;
+		private final Set<Path> ancestors;
+
+		private ScanTask(Path folder, Set<Path> ancestors) {
+			this.folder = folder;
+			this.ancestors = ancestors;
+		}
+
+		@Override
+		protected Map<Path, Path> compute() {
+			final Map<Path, Path> files = new HashMap<>();
+			final List<ScanTask> subtasks = new ArrayList<>();
+			try {
+				// a folder reached again (through a link) while being scanned is not scanned again
+				final Path realFolder = folder.toRealPath();
+				if (ancestors.contains(realFolder)) {
+					return files;
+				}
+				final Set<Path> folders = new HashSet<>(ancestors);
+				folders.add(realFolder);
+				try (DirectoryStream<Path> entries = Files.newDirectoryStream(folder)) {
+					for (Path entry : entries) {
+						final Path relativePath = root.relativize(entry);
+						if (isExcluded(relativePath)) {
+							continue;
+						}
+						final BasicFileAttributes attributes;
+						try {
+							attributes = Files.readAttributes(entry, BasicFileAttributes.class);
+						} catch (IOException e) {
+							LOGGER.warn("Skipping "+entry+" ("+e+")");
+							continue;
+						}
+						if (attributes.isDirectory()) {
+							subtasks.add(new ScanTask(entry, folders));
+						} else if (attributes.isRegularFile() && isIncluded(relativePath)) {
+							addFile(files, entry.toRealPath(), entry);
+						}
+					}
+				}
+			} catch (IOException e) {
+				throw new UncheckedIOException(e);
+			}
+			for (ScanTask subtask : invokeAll(subtasks)) {
+				subtask.join().forEach((realPath, path) -> addFile(files, realPath, path));
+			}
+			return files;
+		}
+
+		private void addFile(Map<Path, Path> files, Path realPath, Path path) {
+			files.merge(realPath, path, (p1, p2) -> (p1.compareTo(p2) <= 0) ? p1 : p2);
+		}
+	}
+}
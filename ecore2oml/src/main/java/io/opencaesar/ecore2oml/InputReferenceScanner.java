@@ -0,0 +1,142 @@
+/**
+ * 
+ * Copyright 2022 Modelware Solutions LLC and CEA-LIST.
+ * 
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * 
+ */
+package io.opencaesar.ecore2oml;
+
+import java.io.BufferedInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashSet;
+import java.util.Map;
+import java.util.Set;
+
+import javax.xml.stream.XMLInputFactory;
+import javax.xml.stream.XMLStreamConstants;
+import javax.xml.stream.XMLStreamException;
+import javax.xml.stream.XMLStreamReader;
+
+import org.eclipse.emf.common.util.URI;
+import org.eclipse.emf.ecore.resource.URIConverter;
+
+/**
+ * A scanner of the other input files that an Ecore or XMI input file references, without loading it.
+ * 
+ * The file is read with StAX, and a file is taken to be referenced when it is named by a namespace
+ * declaration (by the nsURI of one of its packages), by an xsi:schemaLocation, or by the part before
+ * the '#' of an attribute value (e.g., an href, an eType or a list of references), either by the nsURI
+ * of one of its packages or by a URI relative to the scanned file. This finds every input file that
+ * loading the file and resolving its proxies would, and possibly more (e.g., an unused namespace
+ * declaration), which only keeps a file longer than needed.
+ */
+class InputReferenceScanner {
+
+	private static final int BUFFER_SIZE = 1 << 16;
+	private static final String XSI = "http://www.w3.org/2001/XMLSchema-instance";
+	private static final String SCHEMA_LOCATION = "schemaLocation";
+
+	private final URIConverter uriConverter;
+	private final Set<URI> inputs;
+	private final Map<String, URI> nsURIs = new HashMap<>();
+
+	/**
+	 * Creates a new InputReferenceScanner object
+	 * 
+	 * @param uriConverter the URI converter to read the files with
+	 * @param inputURIs the URIs of the input files
+	 * @param ecoreURIs the URIs of the Ecore files whose packages may be referenced by nsURI
+	 * @throws IOException when an Ecore file cannot be scanned
+	 */
+	public InputReferenceScanner(URIConverter uriConverter, Collection<URI> inputURIs, Collection<URI> ecoreURIs) throws IOException {
+		this.uriConverter = uriConverter;
+		this.inputs = new HashSet<>(inputURIs);
+		for (URI uri : ecoreURIs) {
+			for (String nsURI : ReferencedEcoreRegistry.getNsURIs(uriConverter, uri)) {
+				nsURIs.putIfAbsent(nsURI, uri);
+			}
+		}
+	}
+
+	/**
+	 * Gets the other input files referenced by the given file
+	 * 
+	 * @param uri the URI of the file to scan
+	 * @return the URIs of the referenced input files
+	 * @throws IOException when the file cannot be scanned
+	 */
+	public Set<URI> getReferencedURIs(URI uri) throws IOException {
+		final Set<URI> referenced = new LinkedHashSet<>();
+		final XMLInputFactory factory = XMLInputFactory.newInstance();
+		factory.setProperty(XMLInputFactory.SUPPORT_DTD, Boolean.FALSE);
+		factory.setProperty(XMLInputFactory.IS_NAMESPACE_AWARE, Boolean.TRUE);
+		try (InputStream in = new BufferedInputStream(uriConverter.createInputStream(uri), BUFFER_SIZE)) {
+			final XMLStreamReader reader = factory.createXMLStreamReader(in);
+			try {
+				while (reader.hasNext()) {
+					if (reader.next() == XMLStreamConstants.START_ELEMENT) {
+						for (int i = 0; i < reader.getNamespaceCount(); i++) {
+							addNsURI(referenced, reader.getNamespaceURI(i), uri);
+						}
+						for (int i = 0; i < reader.getAttributeCount(); i++) {
+							final boolean schemaLocation = XSI.equals(reader.getAttributeNamespace(i)) && SCHEMA_LOCATION.equals(reader.getAttributeLocalName(i));
+							for (String token : reader.getAttributeValue(i).trim().split("\\s+")) {
+								final int hash = token.indexOf('#');
+								if (hash > 0) {
+									addReferencedURI(referenced, token.substring(0, hash), uri);
+								} else if (hash < 0 && schemaLocation) {
+									addReferencedURI(referenced, token, uri);
+								}
+							}
+						}
+					}
+				}
+			} finally {
+				reader.close();
+			}
+		} catch (XMLStreamException e) {
+			throw new IOException("Failed to scan "+uri, e);
+		}
+		return referenced;
+	}
+
+	private void addNsURI(Set<URI> referenced, String nsURI, URI uri) {
+		final URI target = (nsURI != null) ? nsURIs.get(nsURI) : null;
+		if (target != null && !target.equals(uri)) {
+			referenced.add(target);
+		}
+	}
+
+	private void addReferencedURI(Set<URI> referenced, String value, URI uri) {
+		if (nsURIs.containsKey(value)) {
+			addNsURI(referenced, value, uri);
+			return;
+		}
+		final URI target;
+		try {
+			final URI valueURI = URI.createURI(value);
+			target = valueURI.isRelative() ? valueURI.resolve(uri) : valueURI;
+		} catch (IllegalArgumentException e) {
+			// not a URI
+			return;
+		}
+		if (!target.equals(uri) && inputs.contains(target)) {
+			referenced.add(target);
+		}
+	}
+}
@@ -0,0 +1,331 @@
+/**
+ * 
+ * Copyright 2022 Modelware Solutions LLC and CEA-LIST.
+ * 
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * 
+ */
+package io.opencaesar.ecore2oml;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.FilterInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.security.DigestInputStream;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.HexFormat;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+
+import org.apache.log4j.LogManager;
+import org.apache.log4j.Logger;
+import org.eclipse.emf.common.util.TreeIterator;
+import org.eclipse.emf.common.util.URI;
+import org.eclipse.emf.ecore.EClass;
+import org.eclipse.emf.ecore.EClassifier;
+import org.eclipse.emf.ecore.EObject;
+import org.eclipse.emf.ecore.EStructuralFeature;
+import org.eclipse.emf.ecore.resource.Resource;
+import org.eclipse.emf.ecore.resource.ResourceSet;
+import org.eclipse.emf.ecore.resource.URIConverter;
+import org.eclipse.emf.ecore.resource.impl.FileURIHandlerImpl;
+import org.eclipse.emf.ecore.xmi.XMLResource;
+import org.eclipse.emf.ecore.xmi.impl.XMLResourceImpl;
+
+/**
+ * A cache of the loaded input resources in EMF binary format, in a folder where each file is named by 
+ * the SHA-256 hash of the tool version, the source file path and the source file content.
+ * 
+ * Since the binary format refers to the classes and features of the objects by name, a cached file
+ * starts with the paths and SHA-256 hashes of the metamodel files it was loaded with (i.e., those of 
+ * the classes of its objects, and of their features and feature types), and it is only used while 
+ * they have not changed (otherwise the source file is loaded and cached again). The metamodels that 
+ * are not loaded from files (e.g., Ecore itself) come with the tool, so its version covers them.
+ * 
+ * The cache is a URI handler of the resource sets, so it serves all loads of XML resources (e.g., Ecore
+ * or XMI files), including the demand loads of proxy resolution. A resource is cached only when it has
+ * no XML IDs since those are not kept by the binary format. Xcore files are always parsed since their 
+ * linking needs the other Xcore resources. A cached resource is loaded into the resource the source 
+ * file would be loaded into, so references into it resolve the same way.
+ * 
+ * The cached files that have not been used for {@value #MAX_AGE_DAYS} days are evicted when the cache
+ * is created. Since a changed source file (or tool version) gets a new cached file, this bounds the 
+ * folder to the files used recently.
+ */
+class InputResourceCache {
+
+	private static final Logger LOGGER = LogManager.getLogger(InputResourceCache.class);
+
+	private static final String XCORE = "xcore";
+	private static final String EXTENSION = "bin";
+	private static final int BUFFER_SIZE = 1 << 16;
+	private static final int MAX_AGE_DAYS = 30;
+	private static final int FORMAT = 1;
+
+	private static final Map<Object, Object> SAVE_OPTIONS = Collections.singletonMap(XMLResource.OPTION_BINARY, Boolean.TRUE);
+
+	private final File folder;
+	private final String version;
+	private final Map<String, String> fileHashes = new ConcurrentHashMap<>();
+	private final LongAdder hits = new LongAdder();
+	private final LongAdder misses = new LongAdder();
+
+	/**
+	 * Creates a new InputResourceCache object, evicting the cached files not used recently
+	 * 
+	 * @param folder the folder of the cached files
+	 * @param version the version of the tool
+	 */
+	public InputResourceCache(File folder, String version) {
+		this.folder = folder;
+		this.version = version;
+		evict(System.currentTimeMillis() - TimeUnit.DAYS.toMillis(MAX_AGE_DAYS));
+	}
+
+	/**
+	 * Configures the given resource set (and those sharing its URI converter) to load through the cache
+	 * 
+	 * @param resourceSet the resource set to configure
+	 */
+	public void configure(ResourceSet resourceSet) {
+		resourceSet.getURIConverter().getURIHandlers().add(0, new CachingURIHandler());
+	}
+
+	public long getHits() {
+		return hits.sum();
+	}
+
+	public long getMisses() {
+		return misses.sum();
+	}
+
+	private static boolean isCacheable(Resource resource) {
+		return resource.getErrors().isEmpty()
+			&& ((XMLResource) resource).getEObjectToIDMap().isEmpty();
+	}
+
+	/*
+	 * Deletes the cached (and temporary) files last used before the given time
+	 */
+	private void evict(long time) {
+		final File[] files = folder.listFiles(f -> f.isFile() && f.lastModified() < time);
+		if (files != null) {
+			for (File file : files) {
+				if (file.delete()) {
+					LOGGER.debug("Evicted: "+file);
+				}
+			}
+		}
+	}
+
+	/*
+	 * Saves to a temporary file first that is then moved in place, so that concurrent runs
+	 * (or threads) never read a partially written file
+	 */
+	private void save(Resource resource, File cachedFile) {
+		File tempFile = null;
+		try {
+			final Map<String, String> dependencies = getDependencies(resource);
+			folder.mkdirs();
+			tempFile = File.createTempFile(cachedFile.getName(), ".tmp", folder);
+			try (DataOutputStream out = new DataOutputStream(new BufferedOutputStream(new FileOutputStream(tempFile), BUFFER_SIZE))) {
+				out.writeInt(FORMAT);
+				out.writeInt(dependencies.size());
+				for (Map.Entry<String, String> dependency : dependencies.entrySet()) {
+					out.writeUTF(dependency.getKey());
+					out.writeUTF(dependency.getValue());
+				}
+				resource.save(out, SAVE_OPTIONS);
+			}
+			Files.move(tempFile.toPath(), cachedFile.toPath(), StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+			LOGGER.debug("Cached: "+resource.getURI()+" in "+cachedFile);
+		} catch (IOException | RuntimeException e) {
+			LOGGER.warn("Cannot cache "+resource.getURI()+" ("+e+")");
+			if (tempFile != null) {
+				tempFile.delete();
+			}
+		}
+	}
+
+	/*
+	 * Gets the hashes of the metamodel files of the given resource by path, which are those of the classes 
+	 * of its objects, and of their features and feature types
+	 */
+	private Map<String, String> getDependencies(Resource resource) throws IOException {
+		final URIConverter uriConverter = (resource.getResourceSet() != null) ? resource.getResourceSet().getURIConverter() : URIConverter.INSTANCE;
+		final Set<EClass> eClasses = new HashSet<>();
+		final Set<Resource> metamodels = new HashSet<>();
+		final TreeIterator<EObject> i = resource.getAllContents();
+		while (i.hasNext()) {
+			final EClass eClass = i.next().eClass();
+			if (eClasses.add(eClass)) {
+				metamodels.add(eClass.eResource());
+				for (EStructuralFeature feature : eClass.getEAllStructuralFeatures()) {
+					metamodels.add(feature.eResource());
+					final EClassifier type = feature.getEType();
+					if (type != null) {
+						metamodels.add(type.eResource());
+					}
+				}
+			}
+		}
+		final Map<String, String> dependencies = new TreeMap<>();
+		for (Resource metamodel : metamodels) {
+			if (metamodel != null && metamodel != resource) {
+				final URI uri = uriConverter.normalize(metamodel.getURI());
+				if (uri.isFile()) {
+					final File file = new File(uri.toFileString());
+					dependencies.put(file.getAbsolutePath(), getFileHash(file));
+				}
+			}
+		}
+		return dependencies;
+	}
+
+	/*
+	 * Reads the metamodel files that a cached file was loaded with, and tells whether they are unchanged
+	 */
+	private boolean hasCurrentDependencies(DataInputStream in) throws IOException {
+		if (in.readInt() != FORMAT) {
+			return false;
+		}
+		boolean current = true;
+		final int count = in.readInt();
+		for (int i = 0; i < count; i++) {
+			final File file = new File(in.readUTF());
+			final String hash = in.readUTF();
+			current &= file.isFile() && hash.equals(getFileHash(file));
+		}
+		return current;
+	}
+
+	/*
+	 * Hashes the content of a file once per run, since the input files do not change while converting
+	 */
+	private String getFileHash(File file) throws IOException {
+		final String path = file.getAbsolutePath();
+		String hash = fileHashes.get(path);
+		if (hash == null) {
+			hash = hash(createDigest(), file);
+			fileHashes.put(path, hash);
+		}
+		return hash;
+	}
+
+	private String getKey(File file) throws IOException {
+		final MessageDigest digest = createDigest();
+		digest.update((version+"\n"+file.getAbsolutePath()+"\n").getBytes(StandardCharsets.UTF_8));
+		return hash(digest, file);
+	}
+
+	private static MessageDigest createDigest() throws IOException {
+		try {
+			return MessageDigest.getInstance("SHA-256");
+		} catch (NoSuchAlgorithmException e) {
+			throw new IOException(e);
+		}
+	}
+
+	private static String hash(MessageDigest digest, File file) throws IOException {
+		try (InputStream in = new DigestInputStream(new FileInputStream(file), digest)) {
+			in.transferTo(OutputStream.nullOutputStream());
+		}
+		return HexFormat.of().formatHex(digest.digest());
+	}
+
+	/*
+	 * A handler of file URIs whose input streams let XML resources load through the cache, and read
+	 * the source file otherwise (e.g., when the stream is read by other resources or by a scanner)
+	 */
+	private class CachingURIHandler extends FileURIHandlerImpl {
+		@Override
+		public InputStream createInputStream(URI uri, Map<?, ?> options) throws IOException {
+			final InputStream in = new BufferedInputStream(super.createInputStream(uri, options), BUFFER_SIZE);
+			return XCORE.equals(uri.fileExtension()) ? in : new CachingInputStream(in, uri, options);
+		}
+	}
+
+	/*
+	 * The input stream of a source file, which an XML resource loads from the cached file instead when 
+	 * there is one, or otherwise loads from the source file then caches when possible
+	 */
+	private class CachingInputStream extends FilterInputStream implements URIConverter.Loadable {
+		private final URI uri;
+		private final Map<?, ?> options;
+
+		private CachingInputStream(InputStream in, URI uri, Map<?, ?> options) {
+			super(in);
+			this.uri = uri;
+			this.options = options;
+		}
+
+		@Override
+		public void loadResource(Resource resource) throws IOException {
+			if (!(resource instanceof XMLResourceImpl)) {
+				throw new IOException("Cannot load "+uri+" through the cache as a "+resource.getClass().getSimpleName());
+			}
+			final XMLResourceImpl xmlResource = (XMLResourceImpl) resource;
+			final File cachedFile;
+			try {
+				cachedFile = new File(folder, getKey(new File(uri.toFileString()))+"."+EXTENSION);
+			} catch (IOException e) {
+				LOGGER.warn("Cannot hash "+uri+" ("+e+")");
+				xmlResource.doLoad(in, options);
+				return;
+			}
+
+			if (cachedFile.isFile()) {
+				final Map<Object, Object> loadOptions = (options != null) ? new HashMap<>(options) : new HashMap<>();
+				loadOptions.put(XMLResource.OPTION_BINARY, Boolean.TRUE);
+				try (DataInputStream cachedIn = new DataInputStream(new BufferedInputStream(new FileInputStream(cachedFile), BUFFER_SIZE))) {
+					if (hasCurrentDependencies(cachedIn)) {
+						xmlResource.doLoad(cachedIn, loadOptions);
+						cachedFile.setLastModified(System.currentTimeMillis());
+						hits.increment();
+						LOGGER.debug("Cache hit: "+uri);
+						return;
+					}
+					LOGGER.debug("Cache stale: "+uri);
+				} catch (IOException | RuntimeException e) {
+					LOGGER.warn("Cannot read "+cachedFile+" cached for "+uri+" ("+e+")");
+					xmlResource.getContents().clear();
+					xmlResource.getErrors().clear();
+				}
+			}
+
+			misses.increment();
+			xmlResource.doLoad(in, options);
+			if (isCacheable(xmlResource)) {
+				save(xmlResource, cachedFile);
+			}
+		}
+	}
+}
@@ -0,0 +1,124 @@
+/**
+ * 
+ * Copyright 2022 Modelware Solutions LLC and CEA-LIST.
+ * 
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * 
+ */
+package io.opencaesar.ecore2oml;
+
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.Function;
+
+import org.eclipse.emf.ecore.EClassifier;
+import org.eclipse.emf.ecore.EObject;
+import org.eclipse.emf.ecore.EPackage;
+import org.eclipse.emf.ecore.EStructuralFeature;
+import org.eclipse.emf.ecore.resource.Resource;
+
+/**
+ * A cache of the (interned) IRI strings computed for Ecore elements during a run. 
+ * 
+ * It is meant to be shared by all Ecore2Oml instances of the run, and is safe to use from multiple threads.
+ * The entries are kept per resource of the elements, so that those of a resource are evicted at once.
+ * The keys are compared by identity since EObjects do not override equals and hashCode.
+ */
+class IriCache {
+
+	private final Map<Resource, Entries> entries = new ConcurrentHashMap<>();
+	private final Entries unattachedEntries = new Entries();
+
+	private final LongAdder hits = new LongAdder();
+	private final LongAdder misses = new LongAdder();
+
+	public IriCache() {
+	}
+
+	public String getNamespace(EPackage object, Function<EPackage, String> computer) {
+		return get(getEntries(object).namespaces, object, computer);
+	}
+
+	public String getIri(EClassifier object, Function<EClassifier, String> computer) {
+		return get(getEntries(object).iris, object, computer);
+	}
+
+	public String getIri(EStructuralFeature object, Function<EStructuralFeature, String> computer) {
+		return get(getEntries(object).iris, object, computer);
+	}
+
+	public String getName(EStructuralFeature object, Function<EStructuralFeature, String> computer) {
+		return get(getEntries(object).names, object, computer);
+	}
+
+	/**
+	 * Evicts the entries of the elements of the given resource (e.g., before it gets unloaded)
+	 * 
+	 * @param resource the resource whose elements to evict
+	 */
+	public void evict(Resource resource) {
+		entries.remove(resource);
+	}
+
+	/**
+	 * Gets the number of entries cached for the elements of the given resource
+	 * 
+	 * @param resource the resource of the elements
+	 * @return the number of entries
+	 */
+	public int size(Resource resource) {
+		final Entries e = entries.get(resource);
+		return (e == null) ? 0 : e.namespaces.size() + e.iris.size() + e.names.size();
+	}
+
+	public long getHits() {
+		return hits.sum();
+	}
+
+	public long getMisses() {
+		return misses.sum();
+	}
+
+	private Entries getEntries(EObject object) {
+		final Resource resource = object.eResource();
+		return (resource == null) ? unattachedEntries : entries.computeIfAbsent(resource, r -> new Entries());
+	}
+
+	private <T extends EObject> String get(Map<EObject, String> map, T object, Function<T, String> computer) {
+		String value = map.get(object);
+		if (value != null) {
+			hits.increment();
+			return value;
+		}
+		misses.increment();
+		// not using computeIfAbsent since a computer may query the cache recursively
+		value = computer.apply(object).intern();
+		final String existing = map.putIfAbsent(object, value);
+		return (existing != null) ? existing : value;
+	}
+
+	@Override
+	public String toString() {
+		return "IRI cache: "+getHits()+" hits, "+getMisses()+" misses";
+	}
+
+	/*
+	 * The entries of the elements of one resource
+	 */
+	private static class Entries {
+		private final Map<EObject, String> namespaces = new ConcurrentHashMap<>();
+		private final Map<EObject, String> iris = new ConcurrentHashMap<>();
+		private final Map<EObject, String> names = new ConcurrentHashMap<>();
+	}
+}
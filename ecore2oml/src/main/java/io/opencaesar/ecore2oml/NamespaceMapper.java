@@ -0,0 +1,77 @@
+/**
+ * 
+ * Copyright 2022 Modelware Solutions LLC and CEA-LIST.
+ * 
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * 
+ */
+package io.opencaesar.ecore2oml;
+
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * A mapper of IRIs from old namespace prefixes to new namespace prefixes.
+ * 
+ * The old prefixes are compiled into a character trie, so an IRI is matched against the longest
+ * old prefix it starts with in a time proportional to its length, regardless of the number of 
+ * mappings. The trie is not modified after construction, so an instance is safe to use from
+ * multiple threads.
+ */
+public final class NamespaceMapper {
+
+	private final Node root = new Node();
+
+	/**
+	 * Creates a new NamespaceMapper object
+	 * 
+	 * @param namespaceMap a map from old namespace prefixes to new namespace prefixes
+	 */
+	public NamespaceMapper(Map<String, String> namespaceMap) {
+		namespaceMap.forEach((oldNs, newNs) -> {
+			Node node = root;
+			for (int i = 0; i < oldNs.length(); i++) {
+				node = node.children.computeIfAbsent(oldNs.charAt(i), c -> new Node());
+			}
+			node.newNs = newNs;
+		});
+	}
+
+	/**
+	 * Maps the given IRI by replacing the longest old namespace prefix it starts with by its new prefix 
+	 * 
+	 * @param iri the IRI to map
+	 * @return the mapped IRI, or the given IRI if it does not start with any old namespace prefix
+	 */
+	public String map(String iri) {
+		Node node = root;
+		Node match = (root.newNs != null) ? root : null;
+		int matchLength = 0;
+		for (int i = 0; i < iri.length(); i++) {
+			node = node.children.get(iri.charAt(i));
+			if (node == null) {
+				break;
+			}
+			if (node.newNs != null) {
+				match = node;
+				matchLength = i + 1;
+			}
+		}
+		return (match == null) ? iri : match.newNs + iri.substring(matchLength);
+	}
+
+	private static class Node {
+		private final Map<Character, Node> children = new HashMap<>();
+		private String newNs;
+	}
+}
@@ -0,0 +1,171 @@
+/**
+ * 
+ * Copyright 2022 Modelware Solutions LLC and CEA-LIST.
+ * 
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * 
+ */
+package io.opencaesar.ecore2oml;
+
+import java.io.BufferedWriter;
+import java.io.Closeable;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import java.util.Map;
+import java.util.Set;
+import java.util.regex.Pattern;
+
+/**
+ * A writer of an OML description in textual syntax, which emits its members as they are given
+ * instead of building a description model first.
+ * 
+ * The imports are written upfront, so all namespaces to be referenced need to be known when the 
+ * writer is created. A referenced IRI is abbreviated with the prefix of its namespace when its name
+ * is a plain ID, and written in full otherwise. Names that are keywords are escaped with '^' like the 
+ * Xtext serializer does, while those that are not IDs (see {@link #canWrite}) cannot be written, but can
+ * be converted to IDs first (see {@link #toId}).
+ */
+class OmlDescriptionWriter implements Closeable {
+
+	private static final int BUFFER_SIZE = 1 << 20;
+
+	// a conservative subset of the OML IDs, which is valid in all versions of the grammar
+	private static final Pattern ID = Pattern.compile("[A-Za-z_][A-Za-z0-9_\\-]*");
+
+	// the keywords of the OML grammar (escaping a name that is not one is harmless)
+	private static final Set<String> KEYWORDS = Set.of(
+		"all", "annotation", "as", "aspect", "asymmetric", "builtin", "bundle", "concept", "description", "differentFrom",
+		"domain", "entity", "enumerated", "exactly", "extends", "false", "forward", "from", "functional", "includes",
+		"instance", "inverse", "irreflexive", "key", "language", "length", "max", "maxExclusive", "maxInclusive",
+		"maxLength", "min", "minExclusive", "minInclusive", "minLength", "oneOf", "pattern", "property", "range", "ref",
+		"reflexive", "relation", "restricts", "reverse", "rule", "sameAs", "scalar", "self", "some", "structure",
+		"symmetric", "to", "transitive", "true", "unreified", "uses", "vocabulary");
+
+	private static final char[] HEX = "0123456789ABCDEF".toCharArray();
+
+	private final Writer writer;
+	private final Map<String, String> prefixes;
+
+	/**
+	 * Creates a new OmlDescriptionWriter object and writes the description header
+	 * 
+	 * @param file the file to write
+	 * @param namespace the namespace of the description
+	 * @param prefix the prefix of the description
+	 * @param extensions the namespaces (and prefixes) of the descriptions it extends
+	 * @param usages the namespaces (and prefixes) of the vocabularies it uses
+	 * @throws IOException when the file cannot be written
+	 */
+	public OmlDescriptionWriter(File file, String namespace, String prefix, Map<String, String> extensions, Map<String, String> usages) throws IOException {
+		this.prefixes = usages;
+		file.getParentFile().mkdirs();
+		this.writer = new BufferedWriter(new OutputStreamWriter(new FileOutputStream(file), StandardCharsets.UTF_8), BUFFER_SIZE);
+		writer.write("description <"+namespace+"> as "+prefix+" {\n");
+		for (Map.Entry<String, String> e : extensions.entrySet()) {
+			writer.write("\n\textends <"+e.getKey()+"> as "+e.getValue()+"\n");
+		}
+		for (Map.Entry<String, String> e : usages.entrySet()) {
+			writer.write("\n\tuses <"+e.getKey()+"> as "+e.getValue()+"\n");
+		}
+	}
+
+	/**
+	 * Checks whether a concept instance can be written, i.e., whether its name is an ID and the 
+	 * namespace of its type is imported
+	 * 
+	 * @param name the name of the instance
+	 * @param typeIri the IRI of the type of the instance
+	 * @return whether the instance can be written
+	 */
+	public boolean canWrite(String name, String typeIri) {
+		return ID.matcher(name).matches() && prefixes.containsKey(getNamespace(typeIri));
+	}
+
+	/**
+	 * Writes a concept instance (that can be written) with its type and an optional annotation
+	 * 
+	 * @param name the name of the instance
+	 * @param typeIri the IRI of the type of the instance
+	 * @param annotationPropertyIri the IRI of the annotation property (or null)
+	 * @param annotationValue the value of the annotation
+	 * @throws IOException when the file cannot be written
+	 */
+	public void writeConceptInstance(String name, String typeIri, String annotationPropertyIri, String annotationValue) throws IOException {
+		if (!canWrite(name, typeIri)) {
+			throw new IllegalArgumentException("Cannot write instance '"+name+"' of type <"+typeIri+">");
+		}
+		writer.write("\n");
+		if (annotationPropertyIri != null) {
+			writer.write("\t@"+getRef(annotationPropertyIri)+" "+getQuotedString(annotationValue)+"\n");
+		}
+		writer.write("\tinstance "+getId(name)+" : "+getRef(typeIri)+"\n");
+	}
+
+	/**
+	 * Converts a name to an ID: a name that is already an ID is kept, otherwise (e.g., for a containment
+	 * path like //@contents.0) it gets '_' prepended and each character other than a letter, a digit or '_'
+	 * replaced by '-' and its two hexadecimal digits (or "--" and four digits), so distinct names stay distinct.
+	 * 
+	 * @param name the name to convert
+	 * @return the ID
+	 */
+	public static String toId(String name) {
+		if (ID.matcher(name).matches()) {
+			return name;
+		}
+		final StringBuilder id = new StringBuilder(name.length() * 2).append('_');
+		for (int i = 0; i < name.length(); i++) {
+			final char c = name.charAt(i);
+			if ((c >= 'A' && c <= 'Z') || (c >= 'a' && c <= 'z') || (c >= '0' && c <= '9') || c == '_') {
+				id.append(c);
+			} else if (c <= 0xFF) {
+				id.append('-').append(HEX[c >> 4]).append(HEX[c & 0xF]);
+			} else {
+				id.append("--").append(HEX[c >> 12]).append(HEX[(c >> 8) & 0xF]).append(HEX[(c >> 4) & 0xF]).append(HEX[c & 0xF]);
+			}
+		}
+		return id.toString();
+	}
+
+	@Override
+	public void close() throws IOException {
+		try {
+			writer.write("\n}\n");
+		} finally {
+			writer.close();
+		}
+	}
+
+	private String getRef(String iri) {
+		final String namespace = getNamespace(iri);
+		final String prefix = prefixes.get(namespace);
+		final String name = iri.substring(namespace.length());
+		return (prefix != null && ID.matcher(name).matches() && !KEYWORDS.contains(name)) ? prefix+":"+name : "<"+iri+">";
+	}
+
+	private static String getNamespace(String iri) {
+		return iri.substring(0, Math.max(iri.lastIndexOf('#'), iri.lastIndexOf('/'))+1);
+	}
+
+	private static String getId(String name) {
+		return KEYWORDS.contains(name) ? "^"+name : name;
+	}
+
+	private static String getQuotedString(String value) {
+		return "\"" + value.replace("\\", "\\\\").replace("\"", "\\\"") + "\"";
+	}
+}
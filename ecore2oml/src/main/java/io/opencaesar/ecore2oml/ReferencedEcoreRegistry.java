@@ -0,0 +1,202 @@
+/**
+ * 
+ * Copyright 2022 Modelware Solutions LLC and CEA-LIST.
+ * 
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * 
+ */
+package io.opencaesar.ecore2oml;
+
+import java.io.BufferedInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.ArrayList;
+import java.util.List;
+
+import javax.xml.stream.XMLInputFactory;
+import javax.xml.stream.XMLStreamConstants;
+import javax.xml.stream.XMLStreamException;
+import javax.xml.stream.XMLStreamReader;
+
+import org.apache.log4j.LogManager;
+import org.apache.log4j.Logger;
+import org.eclipse.emf.common.util.TreeIterator;
+import org.eclipse.emf.common.util.URI;
+import org.eclipse.emf.common.util.WrappedException;
+import org.eclipse.emf.ecore.EFactory;
+import org.eclipse.emf.ecore.EObject;
+import org.eclipse.emf.ecore.EPackage;
+import org.eclipse.emf.ecore.resource.Resource;
+import org.eclipse.emf.ecore.resource.ResourceSet;
+import org.eclipse.emf.ecore.resource.URIConverter;
+import org.eclipse.emf.ecore.util.EcoreUtil;
+
+/**
+ * A registry of referenced Ecore files that are only loaded when one of their packages is needed.
+ * 
+ * Each file is scanned (without being loaded) for the nsURIs of its packages, which get registered 
+ * with descriptors that load the file on demand. The file URI itself is also registered, so that a 
+ * resource set resolving a proxy into the file by URI (rather than by nsURI) gets the same resource 
+ * from the package registry instead of loading a copy of it. The files are loaded in a resource set 
+ * of their own, one at a time, since the descriptors may be called from several loading threads. 
+ * That resource set is not thread safe otherwise, so the proxies between the loaded files need to be
+ * resolved (see {@link #resolveAll()}) before converting from several threads.
+ */
+class ReferencedEcoreRegistry {
+
+	private static final Logger LOGGER = LogManager.getLogger(ReferencedEcoreRegistry.class);
+
+	private static final int BUFFER_SIZE = 1 << 16;
+	private static final String XMI = "XMI";
+	private static final String SUBPACKAGES = "eSubpackages";
+	private static final String NS_URI = "nsURI";
+
+	private final ResourceSet resourceSet;
+
+	/**
+	 * Creates a new ReferencedEcoreRegistry object
+	 * 
+	 * @param resourceSet the resource set to load the referenced files in
+	 */
+	public ReferencedEcoreRegistry(ResourceSet resourceSet) {
+		this.resourceSet = resourceSet;
+	}
+
+	/**
+	 * Registers the packages of the given Ecore file in the given package registry, which needs to be 
+	 * thread safe when the packages may be looked up from several threads
+	 * 
+	 * @param packageRegistry the package registry to register in
+	 * @param uri the URI of the Ecore file
+	 * @throws IOException when the file cannot be scanned
+	 */
+	public void register(EPackage.Registry packageRegistry, URI uri) throws IOException {
+		final List<String> nsURIs = getNsURIs(resourceSet.getURIConverter(), uri);
+		for (String nsURI : nsURIs) {
+			packageRegistry.put(nsURI, new PackageDescriptor(uri, nsURI));
+		}
+		if (!nsURIs.isEmpty()) {
+			packageRegistry.put(uri.toString(), new PackageDescriptor(uri, nsURIs.get(0)));
+		}
+		LOGGER.debug("Registered: "+uri+" "+nsURIs);
+	}
+
+	/**
+	 * Resolves the proxies of the referenced files loaded so far, which may load more of them
+	 */
+	public synchronized void resolveAll() {
+		EcoreUtil.resolveAll(resourceSet);
+	}
+
+	/*
+	 * Scans the nsURIs of the root packages (directly or in an XMI wrapper) and their subpackages
+	 */
+	static List<String> getNsURIs(URIConverter uriConverter, URI uri) throws IOException {
+		final List<String> nsURIs = new ArrayList<>();
+		final XMLInputFactory factory = XMLInputFactory.newInstance();
+		factory.setProperty(XMLInputFactory.SUPPORT_DTD, Boolean.FALSE);
+		factory.setProperty(XMLInputFactory.IS_NAMESPACE_AWARE, Boolean.TRUE);
+		try (InputStream in = new BufferedInputStream(uriConverter.createInputStream(uri), BUFFER_SIZE)) {
+			final XMLStreamReader reader = factory.createXMLStreamReader(in);
+			try {
+				int depth = 0;
+				boolean wrapped = false;
+				while (reader.hasNext()) {
+					final int event = reader.next();
+					if (event == XMLStreamConstants.START_ELEMENT) {
+						if (depth == 0 && XMI.equals(reader.getLocalName())) {
+							wrapped = true;
+						} else if (depth == (wrapped ? 1 : 0) || SUBPACKAGES.equals(reader.getLocalName())) {
+							final String nsURI = reader.getAttributeValue(null, NS_URI);
+							if (nsURI != null) {
+								nsURIs.add(nsURI);
+							}
+						}
+						depth++;
+					} else if (event == XMLStreamConstants.END_ELEMENT) {
+						depth--;
+					}
+				}
+			} finally {
+				reader.close();
+			}
+		} catch (XMLStreamException e) {
+			throw new IOException("Failed to scan "+uri, e);
+		}
+		return nsURIs;
+	}
+
+	/*
+	 * A descriptor of a package in a referenced file, which loads the file the first time it is called
+	 */
+	private class PackageDescriptor implements EPackage.Descriptor {
+		private final URI uri;
+		private final String nsURI;
+
+		private PackageDescriptor(URI uri, String nsURI) {
+			this.uri = uri;
+			this.nsURI = nsURI;
+		}
+
+		@Override
+		public EPackage getEPackage() {
+			synchronized (ReferencedEcoreRegistry.this) {
+				final Resource resource = getLoadedResource();
+				final TreeIterator<EObject> i = resource.getAllContents();
+				while (i.hasNext()) {
+					final EObject content = i.next();
+					if (content instanceof EPackage) {
+						if (nsURI.equals(((EPackage) content).getNsURI())) {
+							return (EPackage) content;
+						}
+					} else {
+						i.prune();
+					}
+				}
+				return null;
+			}
+		}
+
+		/*
+		 * Looks the resource up (then loads it) without going through ResourceSet.getResource, which 
+		 * would look the file URI up in the package registry and call this descriptor again
+		 */
+		private Resource getLoadedResource() {
+			Resource resource = null;
+			for (Resource r : resourceSet.getResources()) {
+				if (uri.equals(r.getURI())) {
+					resource = r;
+					break;
+				}
+			}
+			if (resource == null) {
+				resource = resourceSet.createResource(uri);
+			}
+			if (!resource.isLoaded()) {
+				LOGGER.info("Reading: "+uri);
+				try {
+					resource.load(resourceSet.getLoadOptions());
+				} catch (IOException e) {
+					throw new WrappedException(e);
+				}
+			}
+			return resource;
+		}
+
+		@Override
+		public EFactory getEFactory() {
+			final EPackage ePackage = getEPackage();
+			return (ePackage != null) ? ePackage.getEFactoryInstance() : null;
+		}
+	}
+}
@@ -0,0 +1,70 @@
+/**
+ * 
+ * Copyright 2022 Modelware Solutions LLC and CEA-LIST.
+ * 
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * 
+ */
+package io.opencaesar.ecore2oml;
+
+import org.eclipse.emf.ecore.EFactory;
+import org.eclipse.emf.ecore.EPackage;
+import org.eclipse.emf.ecore.impl.EPackageRegistryImpl;
+
+/**
+ * A package registry that can be shared by resource sets loading or resolving proxies from several 
+ * threads at once.
+ *
+ * Looking up a package registered with a descriptor puts the resolved package back in the registry 
+ * (in the delegate registry when it is registered there), so lookups are serialized on this registry 
+ * and all threads need to go through it rather than through its delegate.
+ */
+class SynchronizedPackageRegistry extends EPackageRegistryImpl {
+
+	private static final long serialVersionUID = 1L;
+
+	public SynchronizedPackageRegistry(EPackage.Registry delegateRegistry) {
+		super(delegateRegistry);
+	}
+
+	@Override
+	public synchronized EPackage getEPackage(String nsURI) {
+		return super.getEPackage(nsURI);
+	}
+
+	@Override
+	public synchronized EFactory getEFactory(String nsURI) {
+		return super.getEFactory(nsURI);
+	}
+
+	@Override
+	public synchronized Object get(Object key) {
+		return super.get(key);
+	}
+
+	@Override
+	public synchronized boolean containsKey(Object key) {
+		return super.containsKey(key);
+	}
+
+	@Override
+	public synchronized Object put(String key, Object value) {
+		return super.put(key, value);
+	}
+
+	@Override
+	public synchronized Object remove(Object key) {
+		return super.remove(key);
+	}
+
+}
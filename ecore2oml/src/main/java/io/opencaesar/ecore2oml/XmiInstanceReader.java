@@ -0,0 +1,381 @@
+/**
+ * 
+ * Copyright 2022 Modelware Solutions LLC and CEA-LIST.
+ * 
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * 
+ */
+package io.opencaesar.ecore2oml;
+
+import java.io.BufferedInputStream;
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.ArrayDeque;
+import java.util.Collection;
+import java.util.Deque;
+import java.util.HashMap;
+import java.util.LinkedHashSet;
+import java.util.Map;
+import java.util.Set;
+
+import javax.xml.XMLConstants;
+import javax.xml.stream.XMLInputFactory;
+import javax.xml.stream.XMLStreamConstants;
+import javax.xml.stream.XMLStreamException;
+import javax.xml.stream.XMLStreamReader;
+
+import org.eclipse.emf.common.util.TreeIterator;
+import org.eclipse.emf.common.util.URI;
+import org.eclipse.emf.ecore.EAttribute;
+import org.eclipse.emf.ecore.EClass;
+import org.eclipse.emf.ecore.EClassifier;
+import org.eclipse.emf.ecore.EObject;
+import org.eclipse.emf.ecore.EPackage;
+import org.eclipse.emf.ecore.EReference;
+import org.eclipse.emf.ecore.EStructuralFeature;
+import org.eclipse.emf.ecore.resource.Resource;
+import org.eclipse.emf.ecore.resource.ResourceSet;
+
+/**
+ * A reader of XMI instance models that streams their objects instead of loading them.
+ * 
+ * The objects are reported in document (i.e., containment pre-order) order with the URI fragment 
+ * EMF would give them (their XMI/ID attribute value, or otherwise their containment path) and their 
+ * EClass. The memory used is proportional to the containment depth, not to the size of the file.
+ * 
+ * The metamodels are looked up by namespace URI in the package registry of the given resource set,
+ * then among its loaded resources, then using the xsi:schemaLocation hints of the file.
+ */
+class XmiInstanceReader {
+
+	private static final String XMI_NS_PREFIX = "http://www.omg.org/";
+	private static final String XMI_ROOT = "XMI";
+	private static final String XSI_NS = XMLConstants.W3C_XML_SCHEMA_INSTANCE_NS_URI;
+	private static final String TYPE = "type";
+	private static final String ID = "id";
+	private static final String HREF = "href";
+	private static final String SCHEMA_LOCATION = "schemaLocation";
+	private static final int BUFFER_SIZE = 1 << 16;
+
+	/**
+	 * A handler of the objects read
+	 */
+	public interface InstanceHandler {
+		/**
+		 * Handles the start of the document, before any object
+		 * 
+		 * @param packages the packages whose namespaces are declared on the root element
+		 * @throws IOException when the handling fails
+		 */
+		default void start(Collection<EPackage> packages) throws IOException {
+		}
+
+		/**
+		 * Handles an object
+		 * 
+		 * @param fragment the URI fragment of the object
+		 * @param type the type of the object
+		 * @throws IOException when the handling fails
+		 */
+		void instance(String fragment, EClass type) throws IOException;
+	}
+
+	private final URI uri;
+	private final ResourceSet resourceSet;
+	private final Map<String, String> schemaLocations = new HashMap<>();
+	private Map<String, EPackage> loadedPackages;
+
+	public XmiInstanceReader(URI uri, ResourceSet resourceSet) {
+		this.uri = uri;
+		this.resourceSet = resourceSet;
+	}
+
+	public URI getURI() {
+		return uri;
+	}
+
+	public void read(InstanceHandler handler) throws IOException {
+		final ConversionEvents.FileLoad event = new ConversionEvents.FileLoad();
+		event.begin();
+		try (InputStream in = new BufferedInputStream(resourceSet.getURIConverter().createInputStream(uri), BUFFER_SIZE)) {
+			final XMLStreamReader reader = createInputFactory().createXMLStreamReader(in);
+			try {
+				read(reader, handler);
+			} finally {
+				reader.close();
+			}
+		} catch (XMLStreamException e) {
+			throw new IOException("Failed to read "+uri, e);
+		}
+		if (event.shouldCommit()) {
+			event.uri = uri.toString();
+			event.fileSize = uri.isFile() ? new File(uri.toFileString()).length() : -1;
+			event.streamed = true;
+			event.commit();
+		}
+	}
+
+	private void read(XMLStreamReader reader, InstanceHandler handler) throws XMLStreamException, IOException {
+		final Deque<Frame> frames = new ArrayDeque<>();
+		int skippedDepth = 0;
+		boolean wrapped = false;
+		boolean severalRoots = false;
+		int rootIndex = 0;
+		while (reader.hasNext()) {
+			final int event = reader.next();
+			if (event == XMLStreamConstants.START_ELEMENT) {
+				if (skippedDepth > 0) {
+					skippedDepth++;
+				} else if (frames.isEmpty() && !wrapped && rootIndex == 0 && isXmiRoot(reader)) {
+					// an XMI wrapper is usually only written for multiple root objects
+					readSchemaLocations(reader);
+					handler.start(getDeclaredPackages(reader));
+					wrapped = true;
+					severalRoots = hasSeveralRoots();
+				} else if (frames.isEmpty()) {
+					if (rootIndex == 0 && !wrapped) {
+						readSchemaLocations(reader);
+						handler.start(getDeclaredPackages(reader));
+					}
+					final EClass type = getRootType(reader);
+					final String path = "/" + (severalRoots ? String.valueOf(rootIndex) : "");
+					rootIndex++;
+					frames.push(new Frame(type, path));
+					handler.instance(getFragment(reader, type, path), type);
+				} else {
+					final Frame parent = frames.peek();
+					final EStructuralFeature feature = getFeature(parent.type, reader);
+					if (feature instanceof EReference && ((EReference)feature).isContainment()) {
+						final EReference reference = (EReference) feature;
+						if (!reference.getEKeys().isEmpty()) {
+							throw new IOException("Cannot stream "+uri+" since "+reference.getName()+" is a keyed reference");
+						}
+						final String path = parent.path + "/@" + reference.getName() + (reference.isMany() ? "." + parent.nextIndex(reference) : "");
+						if (reader.getAttributeValue(null, HREF) == null) {
+							final EClass type = getType(reader, reference);
+							frames.push(new Frame(type, path));
+							handler.instance(getFragment(reader, type, path), type);
+						} else {
+							// cross document containment (still counted in the indices of its siblings)
+							skippedDepth = 1;
+						}
+					} else {
+						// attribute values and non-containment references
+						skippedDepth = 1;
+					}
+				}
+			} else if (event == XMLStreamConstants.END_ELEMENT) {
+				if (skippedDepth > 0) {
+					skippedDepth--;
+				} else if (!frames.isEmpty()) {
+					frames.pop();
+				}
+			}
+		}
+	}
+
+	/*
+	 * Tells whether the XMI wrapper of the file has more than one root object, in which case EMF
+	 * includes the index of a root object in its path. This reads the file again, but only until
+	 * the second root object, unless there is a single one.
+	 */
+	private boolean hasSeveralRoots() throws IOException, XMLStreamException {
+		try (InputStream in = new BufferedInputStream(resourceSet.getURIConverter().createInputStream(uri), BUFFER_SIZE)) {
+			final XMLStreamReader reader = createInputFactory().createXMLStreamReader(in);
+			try {
+				int depth = 0;
+				int roots = 0;
+				while (reader.hasNext()) {
+					final int event = reader.next();
+					if (event == XMLStreamConstants.START_ELEMENT) {
+						depth++;
+						if (depth == 2 && ++roots > 1) {
+							return true;
+						}
+					} else if (event == XMLStreamConstants.END_ELEMENT) {
+						depth--;
+					}
+				}
+				return false;
+			} finally {
+				reader.close();
+			}
+		}
+	}
+
+	private static XMLInputFactory createInputFactory() {
+		final XMLInputFactory factory = XMLInputFactory.newInstance();
+		factory.setProperty(XMLInputFactory.SUPPORT_DTD, Boolean.FALSE);
+		factory.setProperty(XMLInputFactory.IS_NAMESPACE_AWARE, Boolean.TRUE);
+		return factory;
+	}
+
+	private boolean isXmiRoot(XMLStreamReader reader) {
+		final String namespace = reader.getNamespaceURI();
+		return XMI_ROOT.equals(reader.getLocalName()) && namespace != null && namespace.startsWith(XMI_NS_PREFIX);
+	}
+
+	private String getFragment(XMLStreamReader reader, EClass type, String path) {
+		for (int i = 0; i < reader.getAttributeCount(); i++) {
+			final String namespace = reader.getAttributeNamespace(i);
+			if (ID.equals(reader.getAttributeLocalName(i)) && namespace != null && namespace.startsWith(XMI_NS_PREFIX)) {
+				return reader.getAttributeValue(i);
+			}
+		}
+		final EAttribute idAttribute = type.getEIDAttribute();
+		if (idAttribute != null) {
+			final String id = reader.getAttributeValue(null, idAttribute.getName());
+			if (id != null) {
+				return id;
+			}
+		}
+		return path;
+	}
+
+	private EClass getRootType(XMLStreamReader reader) throws IOException {
+		final EClass type = getXsiType(reader);
+		if (type != null) {
+			return type;
+		}
+		final EClassifier classifier = getClassifier(reader.getNamespaceURI(), reader.getLocalName());
+		if (classifier instanceof EClass) {
+			return (EClass) classifier;
+		}
+		throw new IOException("Cannot resolve the type of root element "+reader.getName()+" in "+uri);
+	}
+
+	private EClass getType(XMLStreamReader reader, EReference reference) throws IOException {
+		final EClass type = getXsiType(reader);
+		return (type != null) ? type : reference.getEReferenceType();
+	}
+
+	private EClass getXsiType(XMLStreamReader reader) throws IOException {
+		String qname = reader.getAttributeValue(XSI_NS, TYPE);
+		if (qname == null) {
+			for (int i = 0; i < reader.getAttributeCount() && qname == null; i++) {
+				final String namespace = reader.getAttributeNamespace(i);
+				if (TYPE.equals(reader.getAttributeLocalName(i)) && namespace != null && namespace.startsWith(XMI_NS_PREFIX)) {
+					qname = reader.getAttributeValue(i);
+				}
+			}
+		}
+		if (qname == null) {
+			return null;
+		}
+		final int colon = qname.indexOf(':');
+		final String prefix = (colon == -1) ? XMLConstants.DEFAULT_NS_PREFIX : qname.substring(0, colon);
+		final String name = qname.substring(colon + 1);
+		final EClassifier classifier = getClassifier(reader.getNamespaceContext().getNamespaceURI(prefix), name);
+		if (classifier instanceof EClass) {
+			return (EClass) classifier;
+		}
+		throw new IOException("Cannot resolve type "+qname+" in "+uri);
+	}
+
+	private EStructuralFeature getFeature(EClass type, XMLStreamReader reader) {
+		return type.getEStructuralFeature(reader.getLocalName());
+	}
+
+	private EClassifier getClassifier(String nsURI, String name) {
+		final EPackage ePackage = getPackage(nsURI);
+		return (ePackage != null) ? ePackage.getEClassifier(name) : null;
+	}
+
+	private EPackage getPackage(String nsURI) {
+		if (nsURI == null) {
+			return null;
+		}
+		EPackage ePackage = resourceSet.getPackageRegistry().getEPackage(nsURI);
+		if (ePackage == null) {
+			ePackage = getLoadedPackages().get(nsURI);
+		}
+		if (ePackage == null && schemaLocations.containsKey(nsURI)) {
+			final URI location = URI.createURI(schemaLocations.get(nsURI)).resolve(uri);
+			final Resource resource = resourceSet.getResource(location.trimFragment(), true);
+			final EObject object = location.hasFragment() ? resource.getEObject(location.fragment()) : null;
+			ePackage = (object instanceof EPackage) ? (EPackage) object : null;
+			if (ePackage == null) {
+				loadedPackages = null;
+				ePackage = getLoadedPackages().get(nsURI);
+			}
+		}
+		return ePackage;
+	}
+
+	private Collection<EPackage> getDeclaredPackages(XMLStreamReader reader) {
+		final Set<EPackage> packages = new LinkedHashSet<>();
+		for (int i = 0; i < reader.getNamespaceCount(); i++) {
+			final String namespace = reader.getNamespaceURI(i);
+			if (namespace != null && !namespace.startsWith(XMI_NS_PREFIX) && !XSI_NS.equals(namespace)) {
+				final EPackage ePackage = getPackage(namespace);
+				if (ePackage != null) {
+					packages.add(ePackage);
+				}
+			}
+		}
+		return packages;
+	}
+
+	private Map<String, EPackage> getLoadedPackages() {
+		if (loadedPackages == null) {
+			loadedPackages = new HashMap<>();
+			for (Resource resource : resourceSet.getResources()) {
+				for (EObject root : resource.getContents()) {
+					if (root instanceof EPackage) {
+						final TreeIterator<EObject> i = root.eAllContents();
+						loadedPackages.putIfAbsent(((EPackage)root).getNsURI(), (EPackage)root);
+						while (i.hasNext()) {
+							final EObject o = i.next();
+							if (o instanceof EPackage) {
+								loadedPackages.putIfAbsent(((EPackage)o).getNsURI(), (EPackage)o);
+							} else {
+								i.prune();
+							}
+						}
+					}
+				}
+			}
+		}
+		return loadedPackages;
+	}
+
+	private void readSchemaLocations(XMLStreamReader reader) {
+		final String value = reader.getAttributeValue(XSI_NS, SCHEMA_LOCATION);
+		if (value != null) {
+			final String[] tokens = value.trim().split("\\s+");
+			for (int i = 0; i + 1 < tokens.length; i += 2) {
+				schemaLocations.put(tokens[i], tokens[i + 1]);
+			}
+		}
+	}
+
+	/*
+	 * An object being read, with the running indices of its many-valued containment features 
+	 */
+	private static class Frame {
+		private final EClass type;
+		private final String path;
+		private Map<EStructuralFeature, Integer> indices;
+		private Frame(EClass type, String path) {
+			this.type = type;
+			this.path = path;
+		}
+		private int nextIndex(EStructuralFeature feature) {
+			if (indices == null) {
+				indices = new HashMap<>();
+			}
+			return indices.merge(feature, 1, Integer::sum) - 1;
+		}
+	}
+}
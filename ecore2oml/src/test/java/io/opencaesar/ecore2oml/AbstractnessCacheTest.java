@@ -0,0 +1,162 @@
+/**
+ *
+ * Copyright 2022 Modelware Solutions LLC and CEA-LIST.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ */
+package io.opencaesar.ecore2oml;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+
+import org.eclipse.emf.ecore.EClass;
+import org.eclipse.emf.ecore.EPackage;
+import org.eclipse.emf.ecore.resource.Resource;
+import org.junit.Test;
+
+import io.opencaesar.ecore2oml.EcoreUtilities.AbstractnessCache;
+
+/**
+ * Tests that the abstractness cache agrees with the definition of an abstract class (an abstract class
+ * or interface whose supertypes are all abstract), and that it terminates on cyclic hierarchies.
+ */
+public class AbstractnessCacheTest {
+
+	private final AbstractnessCache cache = new AbstractnessCache();
+
+	@Test
+	public void testDiamond() {
+		final EPackage ePackage = getPackage(ERelationBuilderTest.createResource());
+		final EClass top = addClass(ePackage, "Top", true);
+		final EClass left = addClass(ePackage, "Left", true, top);
+		final EClass right = addClass(ePackage, "Right", true, top);
+		final EClass bottom = addClass(ePackage, "Bottom", true, left, right);
+		final EClass concreteRight = addClass(ePackage, "ConcreteRight", false, top);
+		final EClass mixed = addClass(ePackage, "Mixed", true, left, concreteRight);
+		for (EClass c : List.of(bottom, mixed, top, left, right, concreteRight)) {
+			assertEquals(c.getName(), isAbstract(c), cache.isAbstract(c));
+		}
+		assertTrue(cache.isAbstract(bottom));
+		assertFalse(cache.isAbstract(mixed));
+	}
+
+	@Test
+	public void testRandomHierarchies() {
+		final Random random = new Random(42);
+		for (int n = 0; n < 20; n++) {
+			final EPackage ePackage = getPackage(ERelationBuilderTest.createResource());
+			final List<EClass> classes = new ArrayList<>();
+			for (int i = 0; i < 50; i++) {
+				final EClass c = addClass(ePackage, "C"+i, random.nextInt(5) > 0);
+				for (int j = 0; j < i && j < 3; j++) {
+					final EClass sup = classes.get(random.nextInt(i));
+					if (!c.getESuperTypes().contains(sup)) {
+						c.getESuperTypes().add(sup);
+					}
+				}
+				classes.add(c);
+			}
+			final AbstractnessCache cache = new AbstractnessCache();
+			for (int i = classes.size()-1; i >= 0; i--) {
+				final EClass c = classes.get(i);
+				assertEquals(c.getName(), isAbstract(c), cache.isAbstract(c));
+			}
+		}
+	}
+
+	@Test
+	public void testLongChain() {
+		final EPackage ePackage = getPackage(ERelationBuilderTest.createResource());
+		EClass c = addClass(ePackage, "C0", true);
+		for (int i = 1; i < 10000; i++) {
+			c = addClass(ePackage, "C"+i, true, c);
+		}
+		assertTrue(cache.isAbstract(c));
+	}
+
+	@Test
+	public void testCycleMembersAreNotAbstract() {
+		final EPackage ePackage = getPackage(ERelationBuilderTest.createResource());
+		final EClass a = addClass(ePackage, "A", true);
+		final EClass b = addClass(ePackage, "B", true, a);
+		final EClass c = addClass(ePackage, "C", true, b);
+		a.getESuperTypes().add(c);
+		final EClass sub = addClass(ePackage, "Sub", true, b);
+		final EClass top = addClass(ePackage, "Top", true);
+		final EClass other = addClass(ePackage, "Other", true, top);
+		assertFalse(cache.isAbstract(b));
+		assertFalse(cache.isAbstract(a));
+		assertFalse(cache.isAbstract(c));
+		assertFalse(cache.isAbstract(sub));
+		assertTrue(cache.isAbstract(other));
+	}
+
+	@Test
+	public void testCycleMembersAreNotAbstractFromAnyEntry() {
+		for (int entry = 0; entry < 3; entry++) {
+			final EPackage ePackage = getPackage(ERelationBuilderTest.createResource());
+			final EClass a = addClass(ePackage, "A", true);
+			final EClass b = addClass(ePackage, "B", true, a);
+			final EClass c = addClass(ePackage, "C", true, b);
+			a.getESuperTypes().add(c);
+			final AbstractnessCache cache = new AbstractnessCache();
+			assertFalse(cache.isAbstract(List.of(a, b, c).get(entry)));
+		}
+	}
+
+	@Test
+	public void testEvict() {
+		final EPackage p1 = getPackage(ERelationBuilderTest.createResource());
+		final EPackage p2 = getPackage(ERelationBuilderTest.createResource());
+		final EClass a1 = addClass(p1, "A", true);
+		final EClass a2 = addClass(p2, "A", true);
+		assertTrue(cache.isAbstract(a1));
+		assertTrue(cache.isAbstract(a2));
+		a1.setAbstract(false);
+		a2.setAbstract(false);
+		assertTrue("cached", cache.isAbstract(a1));
+
+		cache.evict(p1.eResource());
+
+		assertFalse("evicted", cache.isAbstract(a1));
+		assertTrue("cached", cache.isAbstract(a2));
+	}
+
+	// Helpers
+
+	/*
+	 * The definition the cache implements, evaluated recursively (so only on acyclic hierarchies)
+	 */
+	private static boolean isAbstract(EClass object) {
+		return (object.isAbstract() || object.isInterface()) &&
+				object.getESuperTypes().stream().allMatch(i -> isAbstract(i));
+	}
+
+	private static EClass addClass(EPackage ePackage, String name, boolean isAbstract, EClass... supers) {
+		final EClass c = ERelationBuilderTest.addClass(ePackage, name);
+		c.setAbstract(isAbstract);
+		c.getESuperTypes().addAll(List.of(supers));
+		return c;
+	}
+
+	private static EPackage getPackage(Resource resource) {
+		return (EPackage) resource.getContents().get(0);
+	}
+
+}
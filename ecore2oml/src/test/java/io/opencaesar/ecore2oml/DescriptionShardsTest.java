@@ -0,0 +1,70 @@
+/**
+ *
+ * Copyright 2022 Modelware Solutions LLC and CEA-LIST.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ */
+package io.opencaesar.ecore2oml;
+
+import static org.junit.Assert.assertEquals;
+
+import org.junit.Test;
+
+/**
+ * Tests the boundaries of the shards of a description, given as the suffix of the description each
+ * instance goes to, marked with a '+' when the instance starts a new shard.
+ */
+public class DescriptionShardsTest {
+
+	@Test
+	public void testNoSharding() {
+		assertEquals("[, , , , ] shards=0", layout(0, 5));
+	}
+
+	@Test
+	public void testFewerInstancesThanShardSize() {
+		assertEquals("[+_1, _1, _1] shards=1", layout(5, 3));
+	}
+
+	@Test
+	public void testFullLastShard() {
+		assertEquals("[+_1, _1, +_2, _2] shards=2", layout(2, 4));
+	}
+
+	@Test
+	public void testPartialLastShard() {
+		assertEquals("[+_1, _1, +_2, _2, +_3] shards=3", layout(2, 5));
+	}
+
+	@Test
+	public void testShardSizeOfOne() {
+		assertEquals("[+_1, +_2, +_3] shards=3", layout(1, 3));
+	}
+
+	@Test
+	public void testNoInstances() {
+		assertEquals("[] shards=0", layout(2, 0));
+	}
+
+	private static String layout(int shardSize, int instanceCount) {
+		final DescriptionShards shards = new DescriptionShards(shardSize);
+		final StringBuilder s = new StringBuilder("[");
+		for (int i = 0; i < instanceCount; i++) {
+			final boolean started = shards.add();
+			s.append((i > 0) ? ", " : "").append(started ? "+" : "").append(shards.getSuffix());
+		}
+		return s.append("] shards=").append(shards.getShardCount()).toString();
+	}
+
+}
@@ -0,0 +1,485 @@
+/**
+ *
+ * Copyright 2022 Modelware Solutions LLC and CEA-LIST.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ */
+package io.opencaesar.ecore2oml;
+
+import static org.junit.Assert.assertEquals;
+
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+import java.util.Set;
+import java.util.stream.Collectors;
+
+import org.eclipse.emf.common.util.URI;
+import org.eclipse.emf.ecore.EAnnotation;
+import org.eclipse.emf.ecore.EClass;
+import org.eclipse.emf.ecore.EObject;
+import org.eclipse.emf.ecore.EPackage;
+import org.eclipse.emf.ecore.EReference;
+import org.eclipse.emf.ecore.EStructuralFeature;
+import org.eclipse.emf.ecore.EcoreFactory;
+import org.eclipse.emf.ecore.resource.Resource;
+import org.eclipse.emf.ecore.resource.impl.ResourceImpl;
+import org.junit.Test;
+
+import io.opencaesar.ecore2oml.EcoreUtilities.ERelationBuilder;
+import io.opencaesar.ecore2oml.EcoreUtilities.SuperFeatureIndex;
+
+/**
+ * Tests that the eRelations (their ends, forward ends and supers) built by {@link ERelationBuilder}
+ * match the golden output of the original recursive grouping, and that the closure of supers copes
+ * with diamonds, long chains and cycles.
+ */
+public class ERelationBuilderTest {
+
+	@Test
+	public void testGroupsMatchGoldenOutput() {
+		final Resource resource = createResource();
+		final EPackage ePackage = (EPackage) resource.getContents().get(0);
+		final EClass a = addClass(ePackage, "A");
+		final EClass b = addClass(ePackage, "B");
+
+		// a containment pair with a sub pair
+		final EReference owned = addReference(a, "owned", b, -1);
+		owned.setContainment(true);
+		final EReference owner = addReference(b, "owner", a, 1);
+		setOpposites(owned, owner);
+		final EReference ownedPart = addReference(a, "ownedPart", b, -1);
+		ownedPart.setContainment(true);
+		final EReference partOwner = addReference(b, "partOwner", a, 1);
+		setOpposites(ownedPart, partOwner);
+		addAnnotation(ownedPart, "subsets", owned);
+		addAnnotation(partOwner, "subsets", owner);
+
+		// a single reference with a redefinition
+		final EReference friends = addReference(a, "friends", a, -1);
+		final EReference bestFriend = addReference(a, "bestFriend", a, 1);
+		addAnnotation(bestFriend, "redefines", friends);
+
+		// a pair without a preferred end, whose sub pair subsets the reverse end
+		final EReference peers = addReference(b, "peers", b, -1);
+		final EReference peersOf = addReference(b, "peersOf", b, -1);
+		setOpposites(peers, peersOf);
+		final EReference closePeersOf = addReference(b, "closePeersOf", b, -1);
+		final EReference closePeers = addReference(b, "closePeers", b, -1);
+		setOpposites(closePeersOf, closePeers);
+		addAnnotation(closePeersOf, "subsets", peersOf);
+
+		final String expected = String.join("\n",
+			"A.owned: forward=A.owned reverse=B.owner supers=[]",
+			"A.ownedPart: forward=A.ownedPart reverse=B.partOwner supers=[A.owned]",
+			"A.friends: forward=A.friends reverse=null supers=[]",
+			"A.bestFriend: forward=A.bestFriend reverse=null supers=[A.friends]",
+			"B.owner: forward=A.owned reverse=B.owner supers=[]",
+			"B.partOwner: forward=A.ownedPart reverse=B.partOwner supers=[A.owned]",
+			"B.peers: forward=B.peers reverse=B.peersOf supers=[]",
+			"B.peersOf: forward=B.peers reverse=B.peersOf supers=[]",
+			"B.closePeersOf: forward=B.closePeers reverse=B.closePeersOf supers=[B.peers]",
+			"B.closePeers: forward=B.closePeers reverse=B.closePeersOf supers=[B.peers]",
+			"");
+		assertEquals(expected, describe(resource, buildERelations(resource)));
+		assertEquals(expected, describe(resource, buildBaselineERelations(resource)));
+	}
+
+	@Test
+	public void testGroupsMatchBaselineOnGeneratedModel() {
+		final Resource resource = createResource();
+		final EPackage ePackage = (EPackage) resource.getContents().get(0);
+		final Random random = new Random(0);
+		final List<EClass> classes = new ArrayList<>();
+		for (int i = 0; i < 20; i++) {
+			classes.add(addClass(ePackage, "C"+i));
+		}
+		final List<EReference> references = new ArrayList<>();
+		for (int i = 0; i < 200; i++) {
+			final EClass source = classes.get(random.nextInt(classes.size()));
+			final EClass target = classes.get(random.nextInt(classes.size()));
+			final EReference reference = addReference(source, "r"+i, target, random.nextBoolean() ? 1 : -1);
+			reference.setContainment(random.nextInt(5) == 0);
+			if (random.nextInt(3) == 0) {
+				final EReference opposite = addReference(target, "r"+i+"Of", source, random.nextBoolean() ? 1 : -1);
+				setOpposites(reference, opposite);
+			}
+			// subsets and redefines of earlier references only, so the hierarchy has no cycles
+			final int superCount = references.isEmpty() ? 0 : random.nextInt(3);
+			for (int j = 0; j < superCount; j++) {
+				addAnnotation(reference, random.nextBoolean() ? "subsets" : "redefines", references.get(random.nextInt(references.size())));
+			}
+			references.add(reference);
+		}
+		assertEquals(describe(resource, buildBaselineERelations(resource)), describe(resource, buildERelations(resource)));
+	}
+
+	@Test
+	public void testRedundantSupersInDiamondsAreRemoved() {
+		final Resource resource = createResource();
+		final EPackage ePackage = (EPackage) resource.getContents().get(0);
+		final EClass a = addClass(ePackage, "A");
+		final EReference top = addReference(a, "top", a, -1);
+		final EReference left = addReference(a, "left", a, -1);
+		final EReference right = addReference(a, "right", a, -1);
+		final EReference bottom = addReference(a, "bottom", a, -1);
+		final EReference leaf = addReference(a, "leaf", a, -1);
+		addAnnotation(left, "subsets", top);
+		addAnnotation(right, "redefines", top);
+		addAnnotation(bottom, "subsets", left);
+		addAnnotation(bottom, "subsets", right);
+		addAnnotation(bottom, "subsets", top);
+		addAnnotation(leaf, "subsets", top);
+		addAnnotation(leaf, "subsets", bottom);
+
+		final String expected = String.join("\n",
+			"A.top: forward=A.top reverse=null supers=[]",
+			"A.left: forward=A.left reverse=null supers=[A.top]",
+			"A.right: forward=A.right reverse=null supers=[A.top]",
+			"A.bottom: forward=A.bottom reverse=null supers=[A.left, A.right]",
+			"A.leaf: forward=A.leaf reverse=null supers=[A.bottom]",
+			"");
+		assertEquals(expected, describe(resource, buildERelations(resource)));
+		assertEquals(expected, describe(resource, buildBaselineERelations(resource)));
+	}
+
+	@Test
+	public void testLongChainOfSupers() {
+		final Resource resource = createResource();
+		final EPackage ePackage = (EPackage) resource.getContents().get(0);
+		final EClass a = addClass(ePackage, "A");
+		EReference previous = null;
+		for (int i = 0; i < 10000; i++) {
+			final EReference reference = addReference(a, "r"+i, a, -1);
+			if (previous != null) {
+				addAnnotation(reference, "subsets", previous);
+			}
+			previous = reference;
+		}
+		final Map<EReference, Relation> relations = buildERelations(resource);
+		assertEquals("[A.r9998]", relations.get(previous).supers.stream().map(ERelationBuilderTest::getName).collect(Collectors.toList()).toString());
+	}
+
+	@Test
+	public void testCyclicSupersAreBroken() {
+		final Resource resource = createResource();
+		final EPackage ePackage = (EPackage) resource.getContents().get(0);
+		final EClass a = addClass(ePackage, "A");
+		final EReference r1 = addReference(a, "r1", a, -1);
+		final EReference r2 = addReference(a, "r2", a, -1);
+		final EReference r3 = addReference(a, "r3", a, -1);
+		addAnnotation(r1, "subsets", r3);
+		addAnnotation(r2, "subsets", r1);
+		addAnnotation(r3, "redefines", r2);
+		final String expected = String.join("\n",
+			"A.r1: forward=A.r1 reverse=null supers=[A.r3]",
+			"A.r2: forward=A.r2 reverse=null supers=[]",
+			"A.r3: forward=A.r3 reverse=null supers=[A.r2]",
+			"");
+		assertEquals(expected, describe(resource, buildERelations(resource)));
+	}
+
+	@Test
+	public void testSelfSupersAreBroken() {
+		final Resource resource = createResource();
+		final EPackage ePackage = (EPackage) resource.getContents().get(0);
+		final EClass a = addClass(ePackage, "A");
+		final EReference r1 = addReference(a, "r1", a, -1);
+		final EReference r2 = addReference(a, "r2", a, -1);
+		addAnnotation(r1, "subsets", r1);
+		addAnnotation(r2, "subsets", r1);
+		final String expected = String.join("\n",
+			"A.r1: forward=A.r1 reverse=null supers=[]",
+			"A.r2: forward=A.r2 reverse=null supers=[A.r1]",
+			"");
+		assertEquals(expected, describe(resource, buildERelations(resource)));
+	}
+
+	// Helpers
+
+	static Resource createResource() {
+		final Resource resource = new ResourceImpl(URI.createURI("test.ecore"));
+		final EPackage ePackage = EcoreFactory.eINSTANCE.createEPackage();
+		ePackage.setName("test");
+		ePackage.setNsPrefix("test");
+		ePackage.setNsURI("http://test");
+		resource.getContents().add(ePackage);
+		return resource;
+	}
+
+	static EClass addClass(EPackage ePackage, String name) {
+		final EClass eClass = EcoreFactory.eINSTANCE.createEClass();
+		eClass.setName(name);
+		ePackage.getEClassifiers().add(eClass);
+		return eClass;
+	}
+
+	static EReference addReference(EClass eClass, String name, EClass type, int upperBound) {
+		final EReference reference = EcoreFactory.eINSTANCE.createEReference();
+		reference.setName(name);
+		reference.setEType(type);
+		reference.setUpperBound(upperBound);
+		eClass.getEStructuralFeatures().add(reference);
+		return reference;
+	}
+
+	static void setOpposites(EReference reference, EReference opposite) {
+		reference.setEOpposite(opposite);
+		opposite.setEOpposite(reference);
+	}
+
+	static void addAnnotation(EStructuralFeature feature, String source, EStructuralFeature reference) {
+		EAnnotation annotation = feature.getEAnnotation(source);
+		if (annotation == null) {
+			annotation = EcoreFactory.eINSTANCE.createEAnnotation();
+			annotation.setSource(source);
+			feature.getEAnnotations().add(annotation);
+		}
+		annotation.getReferences().add(reference);
+	}
+
+	private static Map<EReference, Relation> buildERelations(Resource resource) {
+		final ERelationBuilder builder = new ERelationBuilder();
+		builder.build(resource, new SuperFeatureIndex(resource));
+		final Map<EReference, Relation> relations = new LinkedHashMap<>();
+		for (EReference reference : getReferences(resource)) {
+			final ERelationBuilder.ERelation a = builder.get(reference);
+			relations.put(reference, new Relation(a.forward, a.reverse, a.supers.stream().map(s -> s.ends.get(0)).collect(Collectors.toList())));
+		}
+		return relations;
+	}
+
+	private static Map<EReference, Relation> buildBaselineERelations(Resource resource) {
+		final BaselineERelationBuilder builder = new BaselineERelationBuilder();
+		builder.build(resource);
+		final Map<EReference, Relation> relations = new LinkedHashMap<>();
+		for (EReference reference : getReferences(resource)) {
+			final BaselineERelationBuilder.ERelation a = builder.eRelations.get(reference);
+			relations.put(reference, new Relation(a.forward, a.reverse, a.supers.stream().map(s -> s.ends.get(0)).collect(Collectors.toList())));
+		}
+		return relations;
+	}
+
+	private static List<EReference> getReferences(Resource resource) {
+		final List<EReference> references = new ArrayList<>();
+		resource.getAllContents().forEachRemaining(o -> {
+			if (o instanceof EReference) {
+				references.add((EReference) o);
+			}
+		});
+		return references;
+	}
+
+	private static String describe(Resource resource, Map<EReference, Relation> relations) {
+		final StringBuilder s = new StringBuilder();
+		for (Map.Entry<EReference, Relation> e : relations.entrySet()) {
+			final Relation r = e.getValue();
+			s.append(getName(e.getKey())+": forward="+getName(r.forward)+" reverse="+getName(r.reverse)+" supers="+r.supers.stream().map(ERelationBuilderTest::getName).collect(Collectors.toList())+"\n");
+		}
+		return s.toString();
+	}
+
+	private static String getName(EReference reference) {
+		return (reference == null) ? "null" : reference.getEContainingClass().getName()+"."+reference.getName();
+	}
+
+	private record Relation(EReference forward, EReference reverse, List<EReference> supers) {}
+
+	/*
+	 * The original (recursive) eRelation builder, kept as the reference of the expected output
+	 */
+	private static class BaselineERelationBuilder {
+
+		private Map<EReference, ERelation> eRelations = new LinkedHashMap<>();
+
+		private List<Set<ERelation>> eRelationGroups = new ArrayList<>();
+
+		private class ERelation {
+			private Set<ERelation> supers = new LinkedHashSet<>();
+			private Set<ERelation> subs = new LinkedHashSet<>();
+			private List<EReference> ends = new ArrayList<>();
+			private EReference forward;
+			private EReference reverse;
+		}
+
+		private void build(Resource inputResource) {
+			var i = inputResource.getAllContents();
+			while (i.hasNext()) {
+				EObject o = i.next();
+				if (o instanceof EClass) {
+					EClass c = (EClass)o;
+					for(EReference e : c.getEReferences()) {
+						getERelation(e);
+					}
+				}
+			}
+			for (ERelation a : eRelations.values()) {
+				removeRedundantSupers(a);
+			}
+			for (ERelation a : eRelations.values()) {
+				putInERelationGroup(a, null);
+			}
+			for (Set<ERelation> g : eRelationGroups) {
+				fixOrderOfEndsInGroup(g);
+			}
+		}
+
+		private void removeRedundantSupers(ERelation a) {
+			Map<ERelation, Set<ERelation>> superMap = new LinkedHashMap<>();
+			a.supers.forEach(i -> superMap.put(i, getAllSupers(i)));
+			Set<ERelation> redundants = new LinkedHashSet<>();
+			Iterator<ERelation> i = a.supers.iterator();
+			while (i.hasNext()) {
+				ERelation superAss = i.next();
+				for (ERelation s : a.supers) {
+					if (superMap.get(s).contains(superAss)) {
+						redundants.add(superAss);
+					}
+				};
+			}
+			a.supers.removeAll(redundants);
+		}
+
+		private Set<ERelation> getAllSupers(ERelation a) {
+			Set<ERelation> allSupers = new LinkedHashSet<>();
+			for (ERelation superAss : a.supers) {
+				allSupers.add(superAss);
+				allSupers.addAll(getAllSupers(superAss));
+			}
+			return allSupers;
+		}
+
+		private ERelation getERelation(EReference e) {
+			if (!eRelations.containsKey(e)) {
+				ERelation a = new ERelation();
+				eRelations.put(e, a);
+				a.ends.add(e);
+				for (EReference superRef : EcoreUtilities.getSuperEReferences(e)) {
+					ERelation superAss = getERelation(superRef);
+					a.supers.add(superAss);
+					superAss.subs.add(a);
+				}
+				if (e.getEOpposite() != null) {
+					EReference o = e.getEOpposite();
+					eRelations.put(o, a);
+					a.ends.add(o);
+					for (EReference superRef : EcoreUtilities.getSuperEReferences(o)) {
+						ERelation superAss = getERelation(superRef);
+						a.supers.add(superAss);
+						superAss.subs.add(a);
+					}
+				}
+			}
+			return eRelations.get(e);
+		}
+
+		private void putInERelationGroup(ERelation a, Set<ERelation> group) {
+			if (group == null) {
+				for (Set<ERelation> g : eRelationGroups) {
+					if (g.contains(a)) {
+						return;
+					}
+				}
+				group = new LinkedHashSet<>();
+				eRelationGroups.add(group);
+			}
+			if (!group.contains(a)) {
+				group.add(a);
+				for (ERelation s : a.supers) {
+					putInERelationGroup(s, group);
+				};
+				for (ERelation s : a.subs) {
+					putInERelationGroup(s, group);
+				};
+			}
+		}
+
+		private void fixOrderOfEndsInGroup(Set<ERelation> group) {
+			Set<ERelation> roots = group.stream()
+					.filter(a -> a.supers.isEmpty())
+					.collect(Collectors.toCollection(LinkedHashSet::new));
+			EReference forward = roots.stream()
+					.map(a -> a.ends.iterator())
+					.map(i -> getPreferredForward(i.next(), (i.hasNext()? i.next() : null)))
+					.filter(i -> i != null)
+					.findFirst()
+					.orElse(group.iterator().next().ends.iterator().next());
+			ERelation a = eRelations.get(forward);
+			a.forward = forward;
+			a.reverse = forward.getEOpposite();
+			a.subs.forEach(s -> setForwardSub(s, a));
+		}
+
+		private void setForwardSub(ERelation ass, ERelation superAss) {
+			if (ass.forward == null && ass.reverse == null) {
+				EReference ref1 = ass.ends.iterator().next();
+				EReference ref2 = ref1.getEOpposite();
+				if ((ref1 != null && superAss.forward != null && EcoreUtilities.getSuperEReferences(ref1).contains(superAss.forward)) ||
+					(ref2 != null && superAss.reverse != null && EcoreUtilities.getSuperEReferences(ref2).contains(superAss.reverse))) {
+					ass.forward = ref1;
+					ass.reverse = ref1.getEOpposite();
+				} else {
+					ass.forward = ref1.getEOpposite();
+					ass.reverse = ref1;
+				}
+				ass.subs.forEach(s -> setForwardSub(s, ass));
+				ass.supers.forEach(s -> setForwardSuper(s, ass));
+			}
+		}
+
+		private void setForwardSuper(ERelation ass, ERelation subAss) {
+			if (ass.forward == null && ass.reverse == null) {
+				EReference ref1 = ass.ends.iterator().next();
+				EReference ref2 = ref1.getEOpposite();
+				if ((ref1 != null && subAss.forward != null && EcoreUtilities.getSuperEReferences(subAss.forward).contains(ref1)) ||
+					(ref2 != null && subAss.reverse != null && EcoreUtilities.getSuperEReferences(subAss.reverse).contains(ref2))) {
+					ass.forward = ref1;
+					ass.reverse = ref1.getEOpposite();
+				} else {
+					ass.forward = ref1.getEOpposite();
+					ass.reverse = ref1;
+				}
+				ass.subs.forEach(s -> setForwardSub(s, ass));
+				ass.supers.forEach(s -> setForwardSuper(s, ass));
+			}
+		}
+
+		private EReference getPreferredForward(EReference ref1, EReference ref2) {
+			EReference one = null;
+			if (ref2 == null) {
+				one = ref1;
+			} else {
+				if (ref1.isContainment() && !ref2.isContainment()) {
+					one = ref1;
+				} else if (ref2.isContainment() && !ref1.isContainment()) {
+					one = ref2;
+				}
+				if (one == null) {
+					int ref1Upper = (ref1.getUpperBound() == -1) ? Integer.MAX_VALUE : ref1.getUpperBound();
+					int ref2Upper = (ref2.getUpperBound() == -1) ? Integer.MAX_VALUE : ref2.getUpperBound();
+					if (ref1Upper > ref2Upper) {
+						one = ref1;
+					} else if (ref2Upper > ref1Upper) {
+						one = ref2;
+					}
+				}
+			}
+			return one;
+		}
+	}
+}
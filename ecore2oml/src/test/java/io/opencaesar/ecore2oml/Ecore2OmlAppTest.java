@@ -0,0 +1,342 @@
+/**
+ *
+ * Copyright 2022 Modelware Solutions LLC and CEA-LIST.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ */
+package io.opencaesar.ecore2oml;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+
+import org.eclipse.emf.common.util.URI;
+import org.eclipse.emf.ecore.EAttribute;
+import org.eclipse.emf.ecore.EClass;
+import org.eclipse.emf.ecore.EObject;
+import org.eclipse.emf.ecore.EPackage;
+import org.eclipse.emf.ecore.EReference;
+import org.eclipse.emf.ecore.EcoreFactory;
+import org.eclipse.emf.ecore.EcorePackage;
+import org.eclipse.emf.ecore.resource.Resource;
+import org.eclipse.emf.ecore.resource.ResourceSet;
+import org.eclipse.emf.ecore.resource.impl.ResourceSetImpl;
+import org.eclipse.emf.ecore.util.EcoreUtil;
+import org.eclipse.emf.ecore.xmi.XMLResource;
+import org.eclipse.emf.ecore.xmi.impl.XMIResourceFactoryImpl;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+/**
+ * Tests that the options that only change how the conversion runs produce the same output files, byte for byte.
+ */
+public class Ecore2OmlAppTest {
+
+	@Rule
+	public TemporaryFolder folder = new TemporaryFolder();
+
+	@Test
+	public void testLeanOutputIsTheSame() throws IOException {
+		final File inputFolder = createInputFolder();
+		final File expected = convert(inputFolder, "default");
+		final File actual = convert(inputFolder, "lean", "-ln");
+		assertSameFiles(expected, actual);
+	}
+
+	@Test
+	public void testParallelLoadOutputIsTheSame() throws IOException {
+		final File inputFolder = createInputFolder();
+		final File expected = convert(inputFolder, "default");
+		final File actual = convert(inputFolder, "parallel", "-t", "4");
+		assertSameFiles(expected, actual);
+	}
+
+	@Test
+	public void testParallelConversionOutputIsTheSame() throws IOException {
+		final File inputFolder = createInputFolder();
+		final File expected = convert(inputFolder, "default");
+		final File actual = convert(inputFolder, "parallel", "-t", "4", "-pc");
+		assertSameFiles(expected, actual);
+	}
+
+	@Test
+	public void testParallelLeanConversionOutputIsTheSame() throws IOException {
+		final File inputFolder = createInputFolder();
+		final File expected = convert(inputFolder, "default");
+		final File actual = convert(inputFolder, "parallel", "-t", "4", "-pc", "-ln");
+		assertSameFiles(expected, actual);
+	}
+
+	@Test
+	public void testStreamedInstancesOutputIsTheSame() throws IOException {
+		final File inputFolder = createInputFolder();
+		final File expected = convert(inputFolder, "default");
+		final File actual = convert(inputFolder, "streamed", "-si");
+		assertSameFiles(expected, actual);
+	}
+
+	@Test
+	public void testChunkedOutputIsTheSame() throws IOException {
+		final File inputFolder = createInputFolder();
+		final File expected = convert(inputFolder, "default");
+		final File actual = convert(inputFolder, "chunked", "-ic", "4");
+		assertSameFiles(expected, actual);
+	}
+
+	@Test
+	public void testDirectDescriptionOutputIsTheSame() throws IOException {
+		final File inputFolder = createInputFolder();
+		final File expected = convert(inputFolder, "default");
+		final File actual = convert(inputFolder, "direct", "-si", "-dd");
+		assertSameFiles(expected, actual);
+	}
+
+	@Test
+	public void testReportHasTheHeapAfterConversion() throws IOException {
+		final File inputFolder = createInputFolder();
+		final File expectedReport = new File(folder.getRoot(), "default.json");
+		final File actualReport = new File(folder.getRoot(), "lean.json");
+		final File expected = convert(inputFolder, "default", "-rp", expectedReport.getAbsolutePath());
+		final File actual = convert(inputFolder, "lean", "-ln", "-rp", actualReport.getAbsolutePath());
+		assertSameFiles(expected, actual);
+		assertTrue(Files.readString(expectedReport.toPath()).matches("(?s).*\"heapAfterConversion\": \\{\"usedBytes\": \\d+, \"lean\": false\\}.*"));
+		assertTrue(Files.readString(actualReport.toPath()).matches("(?s).*\"heapAfterConversion\": \\{\"usedBytes\": \\d+, \"lean\": true\\}.*"));
+	}
+
+	@Test
+	public void testReleasedInputsOutputIsTheSame() throws IOException {
+		final File inputFolder = createInputFolder();
+		final File expected = convert(inputFolder, "default");
+		final File actual = convert(inputFolder, "released", "-ri");
+		assertSameFiles(expected, actual);
+	}
+
+	@Test
+	public void testFastLoadOutputIsTheSame() throws IOException {
+		final File inputFolder = createInputFolder();
+		final File expected = convert(inputFolder, "default");
+		final File actual = convert(inputFolder, "fast", "-fl");
+		assertSameFiles(expected, actual);
+	}
+
+	@Test
+	public void testCachedOutputIsTheSame() throws IOException {
+		final File inputFolder = createInputFolder();
+		final File cacheFolder = new File(folder.getRoot(), "cache");
+		final File expected = convert(inputFolder, "default");
+		final File first = convert(inputFolder, "cached", "-cf", cacheFolder.getAbsolutePath());
+		final File second = convert(inputFolder, "cachedAgain", "-cf", cacheFolder.getAbsolutePath());
+		assertFalse(getFiles(cacheFolder).isEmpty());
+		assertSameFiles(expected, first);
+		assertSameFiles(expected, second);
+	}
+
+	@Test
+	public void testLazyReferencedEcoreOutputIsTheSame() throws IOException {
+		final File inputFolder = createInputFolder();
+		final String libraryPath = createLibrary(inputFolder).getAbsolutePath();
+		final File expected = convert(inputFolder, "eager", "-r", libraryPath);
+		final File actual = convert(inputFolder, "lazy", "-r", libraryPath, "-lr");
+		final File parallel = convert(inputFolder, "lazyParallel", "-r", libraryPath, "-lr", "-t", "4");
+		assertSameFiles(expected, actual);
+		assertSameFiles(expected, parallel);
+	}
+
+	// Helpers
+
+	/*
+	 * Creates two Ecore files, one extending the other, and XMI files of instances of them that
+	 * reference each other (one of them with several root objects)
+	 */
+	private File createInputFolder() throws IOException {
+		final File inputFolder = folder.newFolder("input");
+		final ResourceSet resourceSet = new ResourceSetImpl();
+		resourceSet.getResourceFactoryRegistry().getExtensionToFactoryMap().put("*", new XMIResourceFactoryImpl());
+
+		final EPackage basePackage = EcoreFactory.eINSTANCE.createEPackage();
+		basePackage.setName("base");
+		basePackage.setNsPrefix("base");
+		basePackage.setNsURI("http://base");
+		final EClass named = ERelationBuilderTest.addClass(basePackage, "Named");
+		named.setAbstract(true);
+		final EAttribute name = EcoreFactory.eINSTANCE.createEAttribute();
+		name.setName("name");
+		name.setEType(EcorePackage.Literals.ESTRING);
+		named.getEStructuralFeatures().add(name);
+		final EClass port = ERelationBuilderTest.addClass(basePackage, "Port");
+		port.getESuperTypes().add(named);
+		save(resourceSet, new File(inputFolder, "base.ecore"), basePackage);
+
+		final Resource ecoreResource = ERelationBuilderTest.createResource();
+		final EPackage ePackage = (EPackage) ecoreResource.getContents().get(0);
+		final EClass system = ERelationBuilderTest.addClass(ePackage, "System");
+		final EClass component = ERelationBuilderTest.addClass(ePackage, "Component");
+		component.getESuperTypes().add(named);
+		final EReference components = ERelationBuilderTest.addReference(system, "components", component, -1);
+		components.setContainment(true);
+		final EReference system_ = ERelationBuilderTest.addReference(component, "system", system, 1);
+		ERelationBuilderTest.setOpposites(components, system_);
+		final EReference connections = ERelationBuilderTest.addReference(component, "connections", component, -1);
+		final EReference mainConnection = ERelationBuilderTest.addReference(component, "mainConnection", component, 1);
+		ERelationBuilderTest.addAnnotation(mainConnection, "subsets", connections);
+		final EReference ports = ERelationBuilderTest.addReference(component, "ports", port, -1);
+		ports.setContainment(true);
+		save(resourceSet, new File(inputFolder, "test.ecore"), ePackage);
+
+		final List<EObject> localComponents = createSystems(resourceSet, new File(inputFolder, "test.xmi"), 1, 10, List.of());
+		createSystems(resourceSet, new File(inputFolder, "other.xmi"), 1, 5, localComponents);
+		createSystems(resourceSet, new File(inputFolder, "several.xmi"), 2, 3, localComponents);
+		return inputFolder;
+	}
+
+	/*
+	 * Creates a referenced Ecore file outside the input folder, an input Ecore file referencing it by
+	 * a file URI, and an input XMI file of instances of it referencing it by nsURI only
+	 */
+	private File createLibrary(File inputFolder) throws IOException {
+		final ResourceSet resourceSet = new ResourceSetImpl();
+		resourceSet.getResourceFactoryRegistry().getExtensionToFactoryMap().put("*", new XMIResourceFactoryImpl());
+
+		final EPackage libraryPackage = EcoreFactory.eINSTANCE.createEPackage();
+		libraryPackage.setName("library");
+		libraryPackage.setNsPrefix("library");
+		libraryPackage.setNsURI("http://library");
+		final EClass book = ERelationBuilderTest.addClass(libraryPackage, "Book");
+		final EAttribute title = EcoreFactory.eINSTANCE.createEAttribute();
+		title.setName("title");
+		title.setEType(EcorePackage.Literals.ESTRING);
+		book.getEStructuralFeatures().add(title);
+		final File libraryFile = new File(folder.newFolder("library"), "library.ecore");
+		save(resourceSet, libraryFile, libraryPackage);
+
+		final EPackage shelfPackage = EcoreFactory.eINSTANCE.createEPackage();
+		shelfPackage.setName("shelf");
+		shelfPackage.setNsPrefix("shelf");
+		shelfPackage.setNsURI("http://shelf");
+		final EClass shelf = ERelationBuilderTest.addClass(shelfPackage, "Shelf");
+		ERelationBuilderTest.addReference(shelf, "books", book, -1);
+		final EClass novel = ERelationBuilderTest.addClass(shelfPackage, "Novel");
+		novel.getESuperTypes().add(book);
+		save(resourceSet, new File(inputFolder, "shelf.ecore"), shelfPackage);
+
+		final Resource resource = resourceSet.createResource(URI.createFileURI(new File(inputFolder, "books.xmi").getAbsolutePath()));
+		for (int i = 0; i < 3; i++) {
+			final EObject b = EcoreUtil.create(book);
+			b.eSet(title, "book "+i);
+			resource.getContents().add(b);
+		}
+		resource.save(Collections.emptyMap());
+		return libraryFile;
+	}
+
+	/*
+	 * Creates an XMI file with systems of named components, each with ports and connected to some of
+	 * the given external components and to some of its siblings
+	 */
+	private static List<EObject> createSystems(ResourceSet resourceSet, File file, int systemCount, int count, List<EObject> externalComponents) throws IOException {
+		final EPackage ePackage = resourceSet.getPackageRegistry().getEPackage("http://test");
+		final EClass system = (EClass) ePackage.getEClassifier("System");
+		final EClass component = (EClass) ePackage.getEClassifier("Component");
+		final EClass port = (EClass) component.getEStructuralFeature("ports").getEType();
+
+		final Resource resource = resourceSet.createResource(URI.createFileURI(file.getAbsolutePath()));
+		final List<EObject> allContents = new ArrayList<>();
+		for (int s = 0; s < systemCount; s++) {
+			final EObject root = EcoreUtil.create(system);
+			final List<EObject> contents = getList(root, "components");
+			for (int i = 0; i < count; i++) {
+				final EObject c = EcoreUtil.create(component);
+				c.eSet(component.getEStructuralFeature("name"), file.getName()+" component "+s+"."+i);
+				for (int j = 0; j < 2; j++) {
+					final EObject p = EcoreUtil.create(port);
+					p.eSet(port.getEStructuralFeature("name"), "port "+j);
+					getList(c, "ports").add(p);
+				}
+				contents.add(c);
+			}
+			for (int i = 0; i < contents.size(); i++) {
+				final EObject c = contents.get(i);
+				final List<EObject> cs = getList(c, "connections");
+				if (!externalComponents.isEmpty()) {
+					cs.add(externalComponents.get((s+i) % externalComponents.size()));
+				}
+				cs.add(contents.get((i+1) % contents.size()));
+				cs.add(contents.get((i+3) % contents.size()));
+				c.eSet(component.getEStructuralFeature("mainConnection"), cs.get(0));
+			}
+			resource.getContents().add(root);
+			allContents.addAll(contents);
+		}
+		resource.save(Map.of(XMLResource.OPTION_SCHEMA_LOCATION, Boolean.TRUE));
+		return allContents;
+	}
+
+	private static void save(ResourceSet resourceSet, File file, EPackage ePackage) throws IOException {
+		final Resource resource = resourceSet.createResource(URI.createFileURI(file.getAbsolutePath()));
+		resource.getContents().add(ePackage);
+		resource.save(Collections.emptyMap());
+		resourceSet.getPackageRegistry().put(ePackage.getNsURI(), ePackage);
+	}
+
+	@SuppressWarnings("unchecked")
+	private static List<EObject> getList(EObject object, String feature) {
+		return (List<EObject>) object.eGet(object.eClass().getEStructuralFeature(feature));
+	}
+
+	private File convert(File inputFolder, String name, String... options) throws IOException {
+		final File outputFolder = folder.newFolder(name);
+		final List<String> args = new ArrayList<>(List.of(
+			"-i", inputFolder.getAbsolutePath(),
+			"-o", outputFolder.getAbsolutePath(),
+			"-ie", "ecore",
+			"-ie", "xmi"));
+		args.addAll(List.of(options));
+		Ecore2OmlApp.main(args.toArray(new String[0]));
+		return outputFolder;
+	}
+
+	private static void assertSameFiles(File expectedFolder, File actualFolder) throws IOException {
+		final List<Path> expected = getFiles(expectedFolder);
+		final List<Path> actual = getFiles(actualFolder);
+		assertFalse(expected.isEmpty());
+		assertEquals(expected, actual);
+		for (Path path : expected) {
+			assertArrayEquals(path.toString(), Files.readAllBytes(expectedFolder.toPath().resolve(path)), Files.readAllBytes(actualFolder.toPath().resolve(path)));
+		}
+	}
+
+	private static List<Path> getFiles(File folder) throws IOException {
+		try (Stream<Path> paths = Files.walk(folder.toPath())) {
+			return paths
+				.filter(Files::isRegularFile)
+				.map(p -> folder.toPath().relativize(p))
+				.sorted()
+				.collect(Collectors.toList());
+		}
+	}
+
+}
@@ -0,0 +1,108 @@
+/**
+ *
+ * Copyright 2022 Modelware Solutions LLC and CEA-LIST.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ */
+package io.opencaesar.ecore2oml;
+
+import static org.junit.Assert.assertEquals;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.List;
+import java.util.stream.Collectors;
+
+import org.junit.Assume;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+/**
+ * Tests that the input file scanner includes and excludes by glob and returns the files aliased by links once.
+ */
+public class InputFileScannerTest {
+
+	@Rule
+	public TemporaryFolder folder = new TemporaryFolder();
+
+	@Test
+	public void testExtensions() throws IOException {
+		createFiles("a.ecore", "b.xmi", "c.txt", "d/e.ecore");
+		assertEquals(List.of("a.ecore", "b.xmi", "d/e.ecore"), scan(List.of(), List.of()));
+	}
+
+	@Test
+	public void testIncludes() throws IOException {
+		createFiles("a.ecore", "b.xmi", "d/e.ecore", "d/f/g.ecore");
+		assertEquals(List.of("a.ecore", "d/e.ecore", "d/f/g.ecore"), scan(List.of("**/*.ecore"), List.of()));
+		assertEquals(List.of("a.ecore", "d/e.ecore", "d/f/g.ecore"), scan(List.of("*.ecore"), List.of()));
+		assertEquals(List.of("d/e.ecore"), scan(List.of("d/*.ecore"), List.of()));
+		assertEquals(List.of("d/e.ecore", "d/f/g.ecore"), scan(List.of("d/**/*.ecore"), List.of()));
+	}
+
+	@Test
+	public void testExcludes() throws IOException {
+		createFiles("a.ecore", "bin/b.ecore", "d/bin/c.ecore", "d/e.ecore", "target/f.ecore");
+		assertEquals(List.of("a.ecore", "d/e.ecore", "target/f.ecore"), scan(List.of(), List.of("**/bin")));
+		assertEquals(List.of("a.ecore", "d/bin/c.ecore", "d/e.ecore", "target/f.ecore"), scan(List.of(), List.of("bin/**")));
+		assertEquals(List.of("a.ecore", "d/e.ecore"), scan(List.of(), List.of("bin", "target")));
+		assertEquals(List.of("bin/b.ecore", "d/bin/c.ecore", "d/e.ecore", "target/f.ecore"), scan(List.of(), List.of("a.ecore")));
+	}
+
+	@Test
+	public void testLinkedFilesAreReturnedOnce() throws IOException {
+		createFiles("b/x.ecore", "c/y.ecore");
+		createLink("a", "b");
+		createLink("c/z.ecore", "c/y.ecore");
+		assertEquals(List.of("a/x.ecore", "c/y.ecore"), scan(List.of(), List.of()));
+		assertEquals(List.of("b/x.ecore", "c/y.ecore"), scan(List.of(), List.of("a")));
+	}
+
+	@Test
+	public void testLinkLoopsAreBroken() throws IOException {
+		createFiles("a/x.ecore", "a/b/y.ecore");
+		createLink("a/b/loop", "a");
+		assertEquals(List.of("a/b/y.ecore", "a/x.ecore"), scan(List.of(), List.of()));
+	}
+
+	// Helpers
+
+	private void createFiles(String... paths) throws IOException {
+		for (String path : paths) {
+			final Path file = folder.getRoot().toPath().resolve(path);
+			Files.createDirectories(file.getParent());
+			Files.writeString(file, path);
+		}
+	}
+
+	private void createLink(String link, String target) {
+		final Path root = folder.getRoot().toPath();
+		try {
+			Files.createSymbolicLink(root.resolve(link), root.resolve(target));
+		} catch (IOException | UnsupportedOperationException e) {
+			Assume.assumeNoException(e);
+		}
+	}
+
+	private List<String> scan(List<String> includes, List<String> excludes) throws IOException {
+		final Path root = folder.getRoot().toPath();
+		return new InputFileScanner(folder.getRoot(), List.of("ecore", "xmi"), includes, excludes).scan(2).stream()
+			.map(File::toPath)
+			.map(p -> root.relativize(p).toString().replace(File.separatorChar, '/'))
+			.collect(Collectors.toList());
+	}
+}
@@ -0,0 +1,151 @@
+/**
+ *
+ * Copyright 2022 Modelware Solutions LLC and CEA-LIST.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ */
+package io.opencaesar.ecore2oml;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+import org.eclipse.emf.common.util.URI;
+import org.eclipse.emf.ecore.EClass;
+import org.eclipse.emf.ecore.EObject;
+import org.eclipse.emf.ecore.EPackage;
+import org.eclipse.emf.ecore.EReference;
+import org.eclipse.emf.ecore.EcoreFactory;
+import org.eclipse.emf.ecore.resource.Resource;
+import org.eclipse.emf.ecore.resource.ResourceSet;
+import org.eclipse.emf.ecore.resource.impl.ResourceSetImpl;
+import org.eclipse.emf.ecore.util.EcoreUtil;
+import org.eclipse.emf.ecore.xmi.XMLResource;
+import org.eclipse.emf.ecore.xmi.impl.XMIResourceFactoryImpl;
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+/**
+ * Tests that the input reference scanner finds the input files that loading an input file needs.
+ */
+public class InputReferenceScannerTest {
+
+	@Rule
+	public TemporaryFolder folder = new TemporaryFolder();
+
+	private URI baseEcore;
+	private URI testEcore;
+	private URI testXmi;
+	private URI otherXmi;
+	private URI plainXmi;
+	private List<URI> inputs;
+
+	@Before
+	public void setUp() throws IOException {
+		final ResourceSet resourceSet = createResourceSet();
+
+		final EPackage basePackage = EcoreFactory.eINSTANCE.createEPackage();
+		basePackage.setName("base");
+		basePackage.setNsPrefix("base");
+		basePackage.setNsURI("http://base");
+		final EClass named = ERelationBuilderTest.addClass(basePackage, "Named");
+		baseEcore = save(resourceSet, "base.ecore", basePackage, false);
+
+		final EPackage ePackage = (EPackage) ERelationBuilderTest.createResource().getContents().get(0);
+		final EClass system = ERelationBuilderTest.addClass(ePackage, "System");
+		system.getESuperTypes().add(named);
+		final EReference systems = ERelationBuilderTest.addReference(system, "systems", system, -1);
+		systems.setContainment(true);
+		final EReference links = ERelationBuilderTest.addReference(system, "links", system, -1);
+		testEcore = save(resourceSet, "test.ecore", ePackage, false);
+
+		final EObject root = EcoreUtil.create(system);
+		final EObject child = EcoreUtil.create(system);
+		getList(root, systems).add(child);
+		testXmi = save(resourceSet, "test.xmi", root, true);
+
+		final EObject other = EcoreUtil.create(system);
+		getList(other, links).add(child);
+		otherXmi = save(resourceSet, "other.xmi", other, true);
+
+		plainXmi = save(resourceSet, "plain.xmi", EcoreUtil.create(system), false);
+		inputs = List.of(baseEcore, testEcore, testXmi, otherXmi, plainXmi);
+	}
+
+	@Test
+	public void testReferencedURIs() throws IOException {
+		final InputReferenceScanner scanner = new InputReferenceScanner(createResourceSet().getURIConverter(), inputs, List.of(baseEcore, testEcore));
+		assertEquals(Set.of(), scanner.getReferencedURIs(baseEcore));
+		assertEquals(Set.of(baseEcore), scanner.getReferencedURIs(testEcore));
+		assertEquals(Set.of(testEcore), scanner.getReferencedURIs(testXmi));
+		assertEquals(Set.of(testEcore, testXmi), scanner.getReferencedURIs(otherXmi));
+		assertEquals(Set.of(testEcore), scanner.getReferencedURIs(plainXmi));
+	}
+
+	@Test
+	public void testReferencedURIsCoverTheLoadedResources() throws IOException {
+		final InputReferenceScanner scanner = new InputReferenceScanner(createResourceSet().getURIConverter(), inputs, List.of(baseEcore, testEcore));
+		for (URI uri : inputs) {
+			final ResourceSet resourceSet = createResourceSet();
+			final EPackage.Registry registry = resourceSet.getPackageRegistry();
+			registry.put("http://base", resourceSet.getResource(baseEcore, true).getContents().get(0));
+			registry.put("http://test", resourceSet.getResource(testEcore, true).getContents().get(0));
+			final Resource resource = resourceSet.getResource(uri, true);
+			EcoreUtil.resolveAll(resource);
+			final Set<Resource> needed = new HashSet<>();
+			resource.getAllContents().forEachRemaining(o -> {
+				needed.add(o.eClass().eResource());
+				o.eCrossReferences().forEach(r -> needed.add(r.eResource()));
+			});
+			final Set<URI> neededURIs = new HashSet<>();
+			needed.stream().filter(r -> r != null && r != resource).forEach(r -> neededURIs.add(r.getURI()));
+			neededURIs.retainAll(inputs);
+			assertTrue(uri.toString(), !uri.equals(testEcore) || neededURIs.contains(baseEcore));
+			assertTrue(uri.toString(), scanner.getReferencedURIs(uri).containsAll(neededURIs));
+		}
+	}
+
+	// Helpers
+
+	private static ResourceSet createResourceSet() {
+		final ResourceSet resourceSet = new ResourceSetImpl();
+		resourceSet.getResourceFactoryRegistry().getExtensionToFactoryMap().put("*", new XMIResourceFactoryImpl());
+		return resourceSet;
+	}
+
+	private URI save(ResourceSet resourceSet, String name, EObject root, boolean schemaLocation) throws IOException {
+		final URI uri = URI.createFileURI(new File(folder.getRoot(), name).getAbsolutePath());
+		final Resource resource = resourceSet.createResource(uri);
+		resource.getContents().add(root);
+		resource.save(schemaLocation ? Map.of(XMLResource.OPTION_SCHEMA_LOCATION, Boolean.TRUE) : Collections.emptyMap());
+		if (root instanceof EPackage) {
+			resourceSet.getPackageRegistry().put(((EPackage) root).getNsURI(), root);
+		}
+		return uri;
+	}
+
+	@SuppressWarnings("unchecked")
+	private static List<EObject> getList(EObject object, EReference reference) {
+		return (List<EObject>) object.eGet(reference);
+	}
+}
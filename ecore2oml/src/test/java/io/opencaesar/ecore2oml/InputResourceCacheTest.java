@@ -0,0 +1,143 @@
+/**
+ *
+ * Copyright 2022 Modelware Solutions LLC and CEA-LIST.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ */
+package io.opencaesar.ecore2oml;
+
+import static org.junit.Assert.assertEquals;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.Collections;
+import java.util.Map;
+
+import org.eclipse.emf.common.util.URI;
+import org.eclipse.emf.ecore.EAttribute;
+import org.eclipse.emf.ecore.EClass;
+import org.eclipse.emf.ecore.EObject;
+import org.eclipse.emf.ecore.EPackage;
+import org.eclipse.emf.ecore.EcoreFactory;
+import org.eclipse.emf.ecore.EcorePackage;
+import org.eclipse.emf.ecore.resource.Resource;
+import org.eclipse.emf.ecore.resource.ResourceSet;
+import org.eclipse.emf.ecore.resource.impl.ResourceSetImpl;
+import org.eclipse.emf.ecore.util.EcoreUtil;
+import org.eclipse.emf.ecore.xmi.XMLResource;
+import org.eclipse.emf.ecore.xmi.impl.XMIResourceFactoryImpl;
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+/**
+ * Tests that the input resource cache serves unchanged files and reloads those whose metamodel changed.
+ */
+public class InputResourceCacheTest {
+
+	@Rule
+	public TemporaryFolder folder = new TemporaryFolder();
+
+	private File cacheFolder;
+	private URI ecoreURI;
+	private URI xmiURI;
+
+	@Before
+	public void setUp() throws IOException {
+		cacheFolder = folder.newFolder("cache");
+		ecoreURI = URI.createFileURI(new File(folder.getRoot(), "test.ecore").getAbsolutePath());
+		xmiURI = URI.createFileURI(new File(folder.getRoot(), "test.xmi").getAbsolutePath());
+
+		final ResourceSet resourceSet = createResourceSet(null);
+		final EPackage ePackage = (EPackage) ERelationBuilderTest.createResource().getContents().get(0);
+		final EClass system = ERelationBuilderTest.addClass(ePackage, "System");
+		addAttribute(system, "name");
+		save(resourceSet, ecoreURI, ePackage, Collections.emptyMap());
+		resourceSet.getPackageRegistry().put(ePackage.getNsURI(), ePackage);
+
+		final EObject object = EcoreUtil.create(system);
+		object.eSet(system.getEStructuralFeature("name"), "a");
+		save(resourceSet, xmiURI, object, Map.of(XMLResource.OPTION_SCHEMA_LOCATION, Boolean.TRUE));
+	}
+
+	@Test
+	public void testUnchangedFilesAreServedFromTheCache() {
+		final InputResourceCache first = new InputResourceCache(cacheFolder, "1");
+		assertEquals("a", getName(load(first)));
+		assertEquals(0, first.getHits());
+		assertEquals(2, first.getMisses());
+
+		final InputResourceCache second = new InputResourceCache(cacheFolder, "1");
+		assertEquals("a", getName(load(second)));
+		assertEquals(2, second.getHits());
+		assertEquals(0, second.getMisses());
+	}
+
+	@Test
+	public void testChangedMetamodelInvalidatesTheCachedFile() throws IOException {
+		load(new InputResourceCache(cacheFolder, "1"));
+
+		// change the metamodel of the cached file
+		final ResourceSet resourceSet = createResourceSet(null);
+		final Resource ecore = resourceSet.getResource(ecoreURI, true);
+		final EClass system = (EClass) ((EPackage) ecore.getContents().get(0)).getEClassifier("System");
+		system.getEStructuralFeatures().move(0, addAttribute(system, "description"));
+		ecore.save(Collections.emptyMap());
+
+		final InputResourceCache cache = new InputResourceCache(cacheFolder, "1");
+		final EObject object = load(cache);
+		assertEquals("a", getName(object));
+		assertEquals(null, object.eGet(object.eClass().getEStructuralFeature("description")));
+		assertEquals(0, cache.getHits());
+		assertEquals(2, cache.getMisses());
+
+		final InputResourceCache next = new InputResourceCache(cacheFolder, "1");
+		assertEquals("a", getName(load(next)));
+		assertEquals(2, next.getHits());
+	}
+
+	// Helpers
+
+	private EObject load(InputResourceCache cache) {
+		return createResourceSet(cache).getResource(xmiURI, true).getContents().get(0);
+	}
+
+	private static String getName(EObject object) {
+		return (String) object.eGet(object.eClass().getEStructuralFeature("name"));
+	}
+
+	private static ResourceSet createResourceSet(InputResourceCache cache) {
+		final ResourceSet resourceSet = new ResourceSetImpl();
+		resourceSet.getResourceFactoryRegistry().getExtensionToFactoryMap().put("*", new XMIResourceFactoryImpl());
+		if (cache != null) {
+			cache.configure(resourceSet);
+		}
+		return resourceSet;
+	}
+
+	private static EAttribute addAttribute(EClass eClass, String name) {
+		final EAttribute attribute = EcoreFactory.eINSTANCE.createEAttribute();
+		attribute.setName(name);
+		attribute.setEType(EcorePackage.Literals.ESTRING);
+		eClass.getEStructuralFeatures().add(attribute);
+		return attribute;
+	}
+
+	private static void save(ResourceSet resourceSet, URI uri, EObject root, Map<?, ?> options) throws IOException {
+		final Resource resource = resourceSet.createResource(uri);
+		resource.getContents().add(root);
+		resource.save(options);
+	}
+}
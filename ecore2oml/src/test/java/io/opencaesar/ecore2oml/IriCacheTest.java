@@ -0,0 +1,144 @@
+/**
+ *
+ * Copyright 2022 Modelware Solutions LLC and CEA-LIST.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ */
+package io.opencaesar.ecore2oml;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertSame;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.eclipse.emf.ecore.EClass;
+import org.eclipse.emf.ecore.EPackage;
+import org.eclipse.emf.ecore.EReference;
+import org.eclipse.emf.ecore.resource.Resource;
+import org.junit.Test;
+
+/**
+ * Tests that the IRI cache computes each entry once and evicts the entries per resource.
+ */
+public class IriCacheTest {
+
+	private final IriCache cache = new IriCache();
+
+	@Test
+	public void testNamespace() {
+		final EPackage ePackage = getPackage(ERelationBuilderTest.createResource());
+		final AtomicInteger count = new AtomicInteger();
+		assertEquals("1http://test#", cache.getNamespace(ePackage, p -> count.incrementAndGet() + p.getNsURI() + "#"));
+		assertEquals("1http://test#", cache.getNamespace(ePackage, p -> count.incrementAndGet() + p.getNsURI() + "#"));
+		assertEquals(1, count.get());
+		assertEquals(1, cache.getHits());
+		assertEquals(1, cache.getMisses());
+	}
+
+	@Test
+	public void testIrisAndNames() {
+		final EPackage ePackage = getPackage(ERelationBuilderTest.createResource());
+		final EClass a = ERelationBuilderTest.addClass(ePackage, "A");
+		final EReference r = ERelationBuilderTest.addReference(a, "r", a, 1);
+		final String namespace = cache.getNamespace(ePackage, p -> p.getNsURI() + "#");
+		final String classIri = cache.getIri(a, c -> cache.getNamespace(ePackage, p -> "unused") + c.getName());
+		final String name = cache.getName(r, f -> f.getEContainingClass().getName() + "_" + f.getName());
+		final String featureIri = cache.getIri(r, f -> namespace + cache.getName(f, g -> "unused"));
+		assertEquals("http://test#A", classIri);
+		assertEquals("A_r", name);
+		assertEquals("http://test#A_r", featureIri);
+		assertSame(classIri, cache.getIri(a, c -> "unused"));
+		assertSame(name, cache.getName(r, f -> "unused"));
+		assertSame(featureIri, cache.getIri(r, f -> "unused"));
+		assertSame("interned", featureIri, featureIri.intern());
+		assertEquals(4, cache.size(ePackage.eResource()));
+	}
+
+	@Test
+	public void testEvict() {
+		final EPackage p1 = getPackage(ERelationBuilderTest.createResource());
+		final EPackage p2 = getPackage(ERelationBuilderTest.createResource());
+		final EClass a1 = ERelationBuilderTest.addClass(p1, "A");
+		final EClass a2 = ERelationBuilderTest.addClass(p2, "A");
+		cache.getNamespace(p1, p -> "1#");
+		cache.getIri(a1, c -> "1#A");
+		cache.getNamespace(p2, p -> "2#");
+		cache.getIri(a2, c -> "2#A");
+
+		cache.evict(p1.eResource());
+
+		assertEquals(0, cache.size(p1.eResource()));
+		assertEquals(2, cache.size(p2.eResource()));
+		assertEquals("recomputed", cache.getIri(a1, c -> "recomputed"));
+		assertEquals("2#A", cache.getIri(a2, c -> "unused"));
+	}
+
+	@Test
+	public void testUnattachedElements() {
+		final EPackage ePackage = getPackage(ERelationBuilderTest.createResource());
+		final EClass a = ERelationBuilderTest.addClass(ePackage, "A");
+		ePackage.eResource().getContents().clear();
+		assertEquals("A", cache.getIri(a, c -> "A"));
+		assertEquals("A", cache.getIri(a, c -> "unused"));
+	}
+
+	@Test
+	public void testConcurrentUse() throws Exception {
+		final List<Resource> resources = new ArrayList<>();
+		final List<EClass> classes = new ArrayList<>();
+		for (int i = 0; i < 4; i++) {
+			final Resource resource = ERelationBuilderTest.createResource();
+			resources.add(resource);
+			for (int j = 0; j < 250; j++) {
+				classes.add(ERelationBuilderTest.addClass(getPackage(resource), "C"+j));
+			}
+		}
+		final ExecutorService executor = Executors.newFixedThreadPool(8);
+		try {
+			final List<Future<List<String>>> futures = new ArrayList<>();
+			for (int t = 0; t < 8; t++) {
+				futures.add(executor.submit(() -> {
+					final List<String> iris = new ArrayList<>();
+					for (EClass c : classes) {
+						iris.add(cache.getIri(c, o -> new String(o.getEPackage().getNsURI() + "#" + o.getName())));
+					}
+					return iris;
+				}));
+			}
+			final List<String> expected = futures.get(0).get();
+			for (Future<List<String>> future : futures) {
+				final List<String> actual = future.get();
+				for (int i = 0; i < classes.size(); i++) {
+					assertSame(expected.get(i), actual.get(i));
+				}
+			}
+		} finally {
+			executor.shutdownNow();
+		}
+		for (Resource resource : resources) {
+			assertEquals(250, cache.size(resource));
+		}
+		assertEquals(8 * classes.size(), cache.getHits() + cache.getMisses());
+	}
+
+	private static EPackage getPackage(Resource resource) {
+		return (EPackage) resource.getContents().get(0);
+	}
+
+}
@@ -0,0 +1,79 @@
+/**
+ *
+ * Copyright 2022 Modelware Solutions LLC and CEA-LIST.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ */
+package io.opencaesar.ecore2oml;
+
+import static org.junit.Assert.assertEquals;
+
+import java.util.Map;
+
+import org.junit.Test;
+
+/**
+ * Tests that an IRI is mapped by the longest old namespace prefix it starts with.
+ */
+public class NamespaceMapperTest {
+
+	private final NamespaceMapper mapper = new NamespaceMapper(Map.of(
+		"http://www.eclipse.org/", "http://eclipse.org/",
+		"http://www.eclipse.org/emf/2002/", "http://eclipse.org/emf/",
+		"http://www.eclipse.org/emf/2002/Ecore", "http://eclipse.org/ecore"));
+
+	@Test
+	public void testNoMatch() {
+		assertEquals("http://example.com/test#A", mapper.map("http://example.com/test#A"));
+	}
+
+	@Test
+	public void testPartialPrefixIsNoMatch() {
+		assertEquals("http://www.eclipse.com/A", mapper.map("http://www.eclipse.com/A"));
+	}
+
+	@Test
+	public void testExactMatch() {
+		assertEquals("http://eclipse.org/ecore", mapper.map("http://www.eclipse.org/emf/2002/Ecore"));
+	}
+
+	@Test
+	public void testShortestOverlappingPrefix() {
+		assertEquals("http://eclipse.org/uml2/5.0.0/UML", mapper.map("http://www.eclipse.org/uml2/5.0.0/UML"));
+	}
+
+	@Test
+	public void testMiddleOverlappingPrefix() {
+		assertEquals("http://eclipse.org/emf/XMLType", mapper.map("http://www.eclipse.org/emf/2002/XMLType"));
+	}
+
+	@Test
+	public void testLongestOverlappingPrefix() {
+		assertEquals("http://eclipse.org/ecore#EClass", mapper.map("http://www.eclipse.org/emf/2002/Ecore#EClass"));
+	}
+
+	@Test
+	public void testNoMappings() {
+		assertEquals("http://www.eclipse.org/emf/2002/Ecore", new NamespaceMapper(Map.of()).map("http://www.eclipse.org/emf/2002/Ecore"));
+	}
+
+	@Test
+	public void testEmptyPrefix() {
+		final NamespaceMapper mapper = new NamespaceMapper(Map.of("", "urn:", "http://", "https://"));
+		assertEquals("https://example.com/A", mapper.map("http://example.com/A"));
+		assertEquals("urn:example", mapper.map("example"));
+		assertEquals("urn:", mapper.map(""));
+	}
+
+}
@@ -0,0 +1,137 @@
+/**
+ *
+ * Copyright 2022 Modelware Solutions LLC and CEA-LIST.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ */
+package io.opencaesar.ecore2oml;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+
+import org.eclipse.emf.common.util.URI;
+import org.eclipse.emf.ecore.EObject;
+import org.eclipse.emf.ecore.resource.Resource;
+import org.eclipse.emf.ecore.util.EcoreUtil;
+import org.eclipse.xtext.resource.XtextResourceSet;
+import org.junit.BeforeClass;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import io.opencaesar.oml.ConceptInstance;
+import io.opencaesar.oml.TypeAssertion;
+import io.opencaesar.oml.dsl.OmlStandaloneSetup;
+import io.opencaesar.oml.util.OmlConstants;
+
+/**
+ * Tests that the descriptions written by {@link OmlDescriptionWriter} parse back with the names and types
+ * of their instances, including those with keywords as names.
+ */
+public class OmlDescriptionWriterTest {
+
+	private static final String VOCABULARY_NS = "http://example.com/vocabulary#";
+
+	private static final String DESCRIPTION_NS = "http://example.com/description#";
+
+	@Rule
+	public TemporaryFolder folder = new TemporaryFolder();
+
+	@BeforeClass
+	public static void setup() {
+		OmlStandaloneSetup.doSetup();
+	}
+
+	@Test
+	public void testRoundTrip() throws IOException {
+		final File vocabularyFile = folder.newFile("vocabulary.oml");
+		Files.writeString(vocabularyFile.toPath(), String.join("\n",
+			"vocabulary <"+VOCABULARY_NS+"> as vocabulary {",
+			"",
+			"\tconcept Component",
+			"",
+			"\tconcept ^relation",
+			"}",
+			""), StandardCharsets.UTF_8);
+
+		final File descriptionFile = new File(folder.getRoot(), "description.oml");
+		try (OmlDescriptionWriter writer = new OmlDescriptionWriter(descriptionFile, DESCRIPTION_NS, "description", Collections.emptyMap(), Map.of(VOCABULARY_NS, "vocabulary"))) {
+			writer.writeConceptInstance("_c1-x", VOCABULARY_NS+"Component", null, null);
+			writer.writeConceptInstance("concept", VOCABULARY_NS+"Component", null, null);
+			writer.writeConceptInstance("c3", VOCABULARY_NS+"relation", null, null);
+			writer.writeConceptInstance(OmlDescriptionWriter.toId("//@contents.0"), VOCABULARY_NS+"Component", null, null);
+		}
+
+		final XtextResourceSet resourceSet = new XtextResourceSet();
+		resourceSet.getLoadOptions().put(OmlConstants.RESOLVE_IRI_USING_RESOURCE_SET, Boolean.TRUE);
+		resourceSet.getResource(URI.createFileURI(vocabularyFile.getAbsolutePath()), true);
+		final Resource resource = resourceSet.getResource(URI.createFileURI(descriptionFile.getAbsolutePath()), true);
+		assertTrue(resource.getErrors().toString(), resource.getErrors().isEmpty());
+		EcoreUtil.resolveAll(resourceSet);
+
+		final List<String> instances = new ArrayList<>();
+		resource.getAllContents().forEachRemaining(o -> {
+			if (o instanceof ConceptInstance) {
+				final ConceptInstance instance = (ConceptInstance) o;
+				for (TypeAssertion assertion : instance.getOwnedTypes()) {
+					final EObject type = assertion.getType();
+					assertFalse(type.eIsProxy());
+					instances.add(instance.getIri()+" : "+assertion.getType().getIri());
+				}
+			}
+		});
+		assertEquals(List.of(
+			DESCRIPTION_NS+"_c1-x : "+VOCABULARY_NS+"Component",
+			DESCRIPTION_NS+"concept : "+VOCABULARY_NS+"Component",
+			DESCRIPTION_NS+"c3 : "+VOCABULARY_NS+"relation",
+			DESCRIPTION_NS+"_-2F-2F-40contents-2E0 : "+VOCABULARY_NS+"Component"), instances);
+	}
+
+	@Test
+	public void testToId() {
+		assertEquals("c1", OmlDescriptionWriter.toId("c1"));
+		assertEquals("_c1-x", OmlDescriptionWriter.toId("_c1-x"));
+		assertEquals("concept", OmlDescriptionWriter.toId("concept"));
+		assertEquals("_-2F", OmlDescriptionWriter.toId("/"));
+		assertEquals("_-2F0", OmlDescriptionWriter.toId("/0"));
+		assertEquals("_-2F-2F-40contents-2E0-2F-40child", OmlDescriptionWriter.toId("//@contents.0/@child"));
+		assertEquals("_1a-2Db", OmlDescriptionWriter.toId("1a-b"));
+		assertEquals("_a-E9", OmlDescriptionWriter.toId("a\u00e9"));
+		assertEquals("_a--03B1", OmlDescriptionWriter.toId("a\u03b1"));
+		assertEquals("_", OmlDescriptionWriter.toId(""));
+	}
+
+	@Test
+	public void testUnwritableInstances() throws IOException {
+		final File descriptionFile = new File(folder.getRoot(), "description.oml");
+		try (OmlDescriptionWriter writer = new OmlDescriptionWriter(descriptionFile, DESCRIPTION_NS, "description", Collections.emptyMap(), Map.of(VOCABULARY_NS, "vocabulary"))) {
+			assertTrue(writer.canWrite("c1", VOCABULARY_NS+"Component"));
+			assertFalse(writer.canWrite("/", VOCABULARY_NS+"Component"));
+			assertFalse(writer.canWrite("/@contents.0", VOCABULARY_NS+"Component"));
+			assertTrue(writer.canWrite(OmlDescriptionWriter.toId("/@contents.0"), VOCABULARY_NS+"Component"));
+			assertFalse(writer.canWrite("c1", "http://example.com/other#Component"));
+		}
+	}
+
+}
@@ -0,0 +1,210 @@
+/**
+ *
+ * Copyright 2022 Modelware Solutions LLC and CEA-LIST.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ */
+package io.opencaesar.ecore2oml;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+import org.eclipse.emf.common.util.TreeIterator;
+import org.eclipse.emf.common.util.URI;
+import org.eclipse.emf.ecore.EAttribute;
+import org.eclipse.emf.ecore.EClass;
+import org.eclipse.emf.ecore.EObject;
+import org.eclipse.emf.ecore.EPackage;
+import org.eclipse.emf.ecore.EReference;
+import org.eclipse.emf.ecore.EcoreFactory;
+import org.eclipse.emf.ecore.EcorePackage;
+import org.eclipse.emf.ecore.resource.Resource;
+import org.eclipse.emf.ecore.resource.ResourceSet;
+import org.eclipse.emf.ecore.resource.impl.ResourceSetImpl;
+import org.eclipse.emf.ecore.util.EcoreUtil;
+import org.eclipse.emf.ecore.xmi.impl.XMIResourceFactoryImpl;
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+/**
+ * Tests that the streamed objects get the URI fragments EMF gives them when loading the same file.
+ */
+public class XmiInstanceReaderTest {
+
+	@Rule
+	public TemporaryFolder folder = new TemporaryFolder();
+
+	private EPackage ePackage;
+	private EClass node;
+	private EReference children;
+	private EReference child;
+	private EAttribute id;
+
+	@Before
+	public void createPackage() {
+		ePackage = (EPackage) ERelationBuilderTest.createResource().getContents().get(0);
+		node = ERelationBuilderTest.addClass(ePackage, "Node");
+		final EClass identified = ERelationBuilderTest.addClass(ePackage, "Identified");
+		identified.getESuperTypes().add(node);
+		id = EcoreFactory.eINSTANCE.createEAttribute();
+		id.setName("id");
+		id.setID(true);
+		id.setEType(EcorePackage.Literals.ESTRING);
+		identified.getEStructuralFeatures().add(id);
+		children = ERelationBuilderTest.addReference(node, "children", node, -1);
+		children.setContainment(true);
+		child = ERelationBuilderTest.addReference(node, "child", node, 1);
+		child.setContainment(true);
+	}
+
+	@Test
+	public void testSingleRoot() throws IOException {
+		final ResourceSet resourceSet = createResourceSet();
+		final Resource resource = resourceSet.createResource(getURI("single.xmi"));
+		resource.getContents().add(createTree(3, 3));
+		resource.save(Collections.emptyMap());
+		assertSameFragments(resource.getURI());
+	}
+
+	@Test
+	public void testSeveralRoots() throws IOException {
+		final ResourceSet resourceSet = createResourceSet();
+		final Resource resource = resourceSet.createResource(getURI("several.xmi"));
+		resource.getContents().add(createTree(2, 2));
+		resource.getContents().add(createTree(2, 2));
+		resource.getContents().add(createTree(1, 2));
+		resource.save(Collections.emptyMap());
+		assertSameFragments(resource.getURI());
+	}
+
+	@Test
+	public void testSingleRootInXmiWrapper() throws IOException {
+		final URI uri = getURI("wrapped.xmi");
+		Files.writeString(new File(uri.toFileString()).toPath(), String.join("\n",
+			"<?xml version=\"1.0\" encoding=\"UTF-8\"?>",
+			"<xmi:XMI xmi:version=\"2.0\" xmlns:xmi=\"http://www.omg.org/XMI\" xmlns:test=\"http://test\">",
+			"  <test:Node>",
+			"    <children><children/><children/></children>",
+			"    <children/>",
+			"    <child/>",
+			"  </test:Node>",
+			"</xmi:XMI>"), StandardCharsets.UTF_8);
+		assertSameFragments(uri);
+	}
+
+	@Test
+	public void testSeveralRootsInXmiWrapper() throws IOException {
+		final URI uri = getURI("wrapped.xmi");
+		Files.writeString(new File(uri.toFileString()).toPath(), String.join("\n",
+			"<?xml version=\"1.0\" encoding=\"UTF-8\"?>",
+			"<xmi:XMI xmi:version=\"2.0\" xmlns:xmi=\"http://www.omg.org/XMI\" xmlns:test=\"http://test\">",
+			"  <test:Node><children/></test:Node>",
+			"  <test:Node><children/><children/></test:Node>",
+			"</xmi:XMI>"), StandardCharsets.UTF_8);
+		assertSameFragments(uri);
+	}
+
+	@Test
+	public void testCrossDocumentContainment() throws IOException {
+		final ResourceSet resourceSet = createResourceSet();
+		final Resource resource = resourceSet.createResource(getURI("parent.xmi"));
+		final Resource other = resourceSet.createResource(getURI("child.xmi"));
+		final EObject root = createTree(0, 0);
+		resource.getContents().add(root);
+		final List<EObject> list = getChildren(root);
+		list.add(EcoreUtil.create(node));
+		final EObject moved = createTree(1, 2);
+		list.add(moved);
+		other.getContents().add(moved);
+		list.add(EcoreUtil.create(node));
+		list.add(createTree(1, 1));
+		resource.save(Collections.emptyMap());
+		other.save(Collections.emptyMap());
+		assertSameFragments(resource.getURI());
+		assertSameFragments(other.getURI());
+	}
+
+	@Test
+	public void testIds() throws IOException {
+		final ResourceSet resourceSet = createResourceSet();
+		final Resource resource = resourceSet.createResource(getURI("ids.xmi"));
+		final EObject root = createTree(1, 3);
+		final EObject identified = EcoreUtil.create((EClass) ePackage.getEClassifier("Identified"));
+		identified.eSet(id, "some_id");
+		getChildren(root).add(identified);
+		getChildren(identified).add(EcoreUtil.create(node));
+		resource.getContents().add(root);
+		resource.save(Collections.emptyMap());
+		assertSameFragments(resource.getURI());
+	}
+
+	// Helpers
+
+	private void assertSameFragments(URI uri) throws IOException {
+		final List<String> expected = new ArrayList<>();
+		final Resource resource = createResourceSet().getResource(uri, true);
+		final TreeIterator<EObject> i = EcoreUtil.getAllProperContents(resource, false);
+		while (i.hasNext()) {
+			final EObject object = i.next();
+			if (object.eIsProxy()) {
+				// contained in another document
+				i.prune();
+				continue;
+			}
+			expected.add(EcoreUtil.getURI(object).fragment()+" "+object.eClass().getName());
+		}
+		final List<String> actual = new ArrayList<>();
+		new XmiInstanceReader(uri, createResourceSet()).read((fragment, type) -> actual.add(fragment+" "+type.getName()));
+		assertFalse(expected.isEmpty());
+		assertEquals(expected, actual);
+	}
+
+	private EObject createTree(int depth, int width) {
+		final EObject object = EcoreUtil.create(node);
+		if (depth > 0) {
+			for (int i = 0; i < width; i++) {
+				getChildren(object).add(createTree(depth - 1, width));
+			}
+			object.eSet(child, createTree(depth - 1, 1));
+		}
+		return object;
+	}
+
+	@SuppressWarnings("unchecked")
+	private List<EObject> getChildren(EObject object) {
+		return (List<EObject>) object.eGet(children);
+	}
+
+	private ResourceSet createResourceSet() {
+		final ResourceSet resourceSet = new ResourceSetImpl();
+		resourceSet.getResourceFactoryRegistry().getExtensionToFactoryMap().put("*", new XMIResourceFactoryImpl());
+		resourceSet.getPackageRegistry().put(ePackage.getNsURI(), ePackage);
+		return resourceSet;
+	}
+
+	private URI getURI(String name) {
+		return URI.createFileURI(new File(folder.getRoot(), name).getAbsolutePath());
+	}
+
+}